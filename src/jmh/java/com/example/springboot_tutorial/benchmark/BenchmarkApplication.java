@@ -0,0 +1,36 @@
+package com.example.springboot_tutorial.benchmark;
+
+import com.example.springboot_tutorial.SpringbootTutorialApplication;
+import com.example.springboot_tutorial.service.ItemSeeder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * ベンチマーク用にアプリケーションを起動し、指定件数のアイテムを投入する
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * アプリケーションを起動し、IDが1〜rowsのアイテムを投入する
+     * @param rows 投入するアイテム数
+     * @param args 追加の起動引数（--key=value形式）
+     */
+    static ConfigurableApplicationContext start(int rows, String... args) {
+        String[] defaults = {
+                "--server.port=0",
+                "--spring.sql.init.mode=never",  // data.sqlの3件は使わない
+                "--logging.level.root=WARN"
+        };
+        String[] allArgs = new String[defaults.length + args.length];
+        System.arraycopy(defaults, 0, allArgs, 0, defaults.length);
+        System.arraycopy(args, 0, allArgs, defaults.length, args.length);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootTutorialApplication.class)
+                .run(allArgs);
+        context.getBean(ItemSeeder.class).seedSynthetic(rows);
+        return context;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.springboot_tutorial.benchmark;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.service.CatalogSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * アイテム一覧をエンティティ（List<Item>）で保持する場合と、列の配列（CatalogSnapshot）で保持する場合の比較
+ * 保持に必要なヒープ（GC後の使用量の差）をセットアップ時に標準出力へ出力し、ベンチマークでは全件の価格の走査時間を測る
+ * エンティティ側はfindAllValues()の結果と同じ形（IDごとのLong・Integer・String）で、
+ * Hibernateで読み込んだ場合の永続化コンテキストの分は含まない（エンティティ側の下限）
+ * ./gradlew jmh -PjmhIncludes=ItemCatalogFootprintBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")  // 1000万件のエンティティを保持できるようにする
+public class ItemCatalogFootprintBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"entities", "columns"})
+    public String layout;
+
+    private List<Item> entities;
+    private CatalogSnapshot columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        if (layout.equals("entities")) {
+            entities = new ArrayList<>(rows);
+            for (int i = 1; i <= rows; i++) {
+                entities.add(new Item((long) i, "item-" + i, i % 10000, 0L));
+            }
+        } else {
+            // ItemCatalogIndexと同じく、Itemを作らずに列へ詰める
+            CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(rows);
+            for (int i = 1; i <= rows; i++) {
+                builder.add(i, "item-" + i, i % 10000, 0L);
+            }
+            columns = builder.build();
+        }
+        long retained = usedHeap() - before;
+        System.out.printf("%nlayout=%s rows=%d retained=%d MB (%.1f bytes/item)%n",
+                layout, rows, retained / (1024 * 1024), (double) retained / rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entities = null;
+        columns = null;
+    }
+
+    @Benchmark
+    public long sumPrices() {
+        long sum = 0;
+        List<Item> items = entities != null ? entities : columns.items();
+        for (Item item : items) {
+            sum += item.getPrice();
+        }
+        return sum;
+    }
+
+    // GCを繰り返して、到達できないオブジェクトを除いた使用量にする
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.springboot_tutorial.benchmark;
+
+import com.example.springboot_tutorial.model.Item;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * アイテム一覧のシリアライズ性能（形式ごと）
+ * Spring MVCと同じ設定のObjectMapperを使う。jsonはBlackbirdなし（従来）、それ以外はJacksonConfigと同じくBlackbirdあり
+ * 形式ごとのレスポンスの大きさ（圧縮なし・gzip）は、セットアップ時に標準出力へ出力する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemJsonBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"json", "json-blackbird", "smile", "cbor"})
+    public String format;
+
+    private List<Item> items;
+    private ObjectWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        items = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            items.add(Item.builder().id((long) i).name("item-" + i).price(i % 10000).version(0L).build());
+        }
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (!format.equals("json")) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        JsonFactory factory = switch (format) {
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> null;
+        };
+        ObjectMapper objectMapper = factory == null ? builder.build() : builder.factory(factory).build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Item.class));
+
+        byte[] payload = writer.writeValueAsBytes(items);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        System.out.printf("%nformat=%s size=%d payload=%d bytes gzip=%d bytes%n",
+                format, size, payload.length, compressed.size());
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return writer.writeValueAsBytes(items);
+    }
+}
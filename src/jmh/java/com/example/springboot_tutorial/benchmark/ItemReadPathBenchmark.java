@@ -0,0 +1,73 @@
+package com.example.springboot_tutorial.benchmark;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * エンティティとして読み込む場合と、select newで直接Itemを作る場合の比較
+ * 1回あたりの割り当て量は ./gradlew jmh -PjmhIncludes=ItemReadPathBenchmark -PjmhProfilers=gc の
+ * gc.alloc.rate.norm（バイト/回）で比べる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemReadPathBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(rows);
+        itemRepository = context.getBean(ItemRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> findAllEntities() {
+        return itemRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Item> findAllValues() {
+        return itemRepository.findAllValues();
+    }
+
+    @Benchmark
+    public Optional<Item> findByIdEntity() {
+        return itemRepository.findById(randomId());
+    }
+
+    @Benchmark
+    public Optional<Item> findByIdValue() {
+        return itemRepository.findValueById(randomId());
+    }
+
+    // 投入済みのIDからランダムに選ぶ
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+}
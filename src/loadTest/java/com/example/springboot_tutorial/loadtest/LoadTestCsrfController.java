@@ -0,0 +1,23 @@
+package com.example.springboot_tutorial.loadtest;
+
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 負荷テストで起動したアプリケーションにだけ加える、CSRFトークンを返すエンドポイント
+ * 負荷テストのクライアントは最初にここを呼び、返ったトークンとセッションのCookieを登録・更新のリクエストに付ける
+ * （CSRFチェックを止めずに、本番と同じセキュリティ設定のまま計測するため）
+ */
+@RestController
+class LoadTestCsrfController {
+
+    static final String PATH = "/loadtest/csrf";
+
+    @GetMapping(PATH)
+    Map<String, String> csrf(CsrfToken token) {
+        return Map.of("headerName", token.getHeaderName(), "token", token.getToken());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.springboot_tutorial.loadtest;
+
+import com.example.springboot_tutorial.SpringbootTutorialApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * デフォルト設定とprodプロファイルの、起動から最初のリクエストに応答するまでの時間の比較
+ * JVMのクラスロードやJITの状態を引き継がないよう、毎回別プロセスでアプリケーションを起動する
+ * -Dloadtest.startup.jvm-args="-XX:SharedArchiveFile=... -Dspring.aot.enabled=true" のようにJVM引数を追加できる
+ *
+ * 計測の手順（結果はリポジトリに記録していないため、比較する環境で実行する）
+ * 1. デフォルト設定とprodプロファイルの比較:
+ *    ./gradlew loadTest --tests '*StartupTimeLoadTest' -Dloadtest.startup.runs=5
+ * 2. CDSアーカイブとAOTを使ったprodの起動（CDSはアーカイブを作ったjarのクラスパスでしか使えないため、このテストではなくjarで起動する）:
+ *    ./gradlew cdsArchive
+ *    java -XX:SharedArchiveFile=build/cds/application.jsa -Dspring.aot.enabled=true -Dspring.profiles.active=prod \
+ *        -jar build/cds/springboot-tutorial-0.0.1-SNAPSHOT.jar
+ *    curl -u user:password http://localhost:8080/items/page?size=1
+ *    ログの「First request ... answered N ms after JVM start」が最初のリクエストまでの時間
+ */
+class StartupTimeLoadTest {
+
+    private static final int RUNS = Integer.getInteger("loadtest.startup.runs", 3);
+    private static final String EXTRA_JVM_ARGS = System.getProperty("loadtest.startup.jvm-args", "");
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    @DisplayName("デフォルト設定とprodプロファイルで、最初のリクエストに応答するまでの時間を比較する")
+    void compareTimeToFirstRequest() throws Exception {
+        long[] defaults = new long[RUNS];
+        long[] prod = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            defaults[i] = timeToFirstRequest();
+            prod[i] = timeToFirstRequest("--spring.profiles.active=prod");
+        }
+
+        System.out.printf("runs=%d jvmArgs=[%s]%n", RUNS, EXTRA_JVM_ARGS);
+        print("default", defaults);
+        print("prod", prod);
+
+        // 比較の前提として、どちらのモードでも起動してリクエストに応答できていること
+        assertThat(defaults).allMatch(millis -> millis > 0);
+        assertThat(prod).allMatch(millis -> millis > 0);
+    }
+
+    // プロセスを起動してから、/items/page が200を返すまでの時間（ミリ秒）
+    private long timeToFirstRequest(String... appArgs) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        if (!EXTRA_JVM_ARGS.isBlank()) {
+            command.addAll(Arrays.asList(EXTRA_JVM_ARGS.trim().split("\\s+")));
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                SpringbootTutorialApplication.class.getName(),
+                "--server.port=" + port, "--logging.level.root=WARN"));
+        command.addAll(Arrays.asList(appArgs));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/items/page?size=1"))
+                .header("Authorization", AUTHORIZATION)
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "startup-load-test.log"))
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos() && process.isAlive()) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (IOException e) {
+                    // まだポートを開いていない
+                }
+                Thread.sleep(10);
+            }
+            return -1;
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void print(String mode, long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-8s timeToFirstRequest median=%d ms min=%d ms max=%d ms all=%s%n",
+                mode, sorted[sorted.length / 2], sorted[0], sorted[sorted.length - 1], Arrays.toString(millis));
+    }
+}
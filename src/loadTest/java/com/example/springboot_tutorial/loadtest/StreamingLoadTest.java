@@ -0,0 +1,159 @@
+package com.example.springboot_tutorial.loadtest;
+
+import com.example.springboot_tutorial.SpringbootTutorialApplication;
+import com.example.springboot_tutorial.service.ItemSeeder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 同期版（/items/stream）とページ単位の非同期版（/async/items/stream）のストリーミングの比較
+ * 読むのが遅いクライアントがストリームを受信している間に、別のクライアントが /items/page を呼んだときのレイテンシを出力する
+ * 遅いクライアントの数はコネクションプールの最大数より多くしておく
+ */
+class StreamingLoadTest {
+
+    private static final int ROWS = Integer.getInteger("loadtest.rows", 50_000);
+    private static final int POOL_SIZE = Integer.getInteger("loadtest.pool-size", 4);
+    private static final int SLOW_CLIENTS = Integer.getInteger("loadtest.slow-clients", 8);
+    // 遅いクライアントは16KB読むごとにこの時間だけ待つ
+    private static final long READ_PAUSE_MILLIS = Long.getLong("loadtest.read-pause-millis", 20);
+    private static final int PROBES = Integer.getInteger("loadtest.probes", 200);
+
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    @DisplayName("遅いクライアントがストリームを受信中に、他のリクエストのレイテンシを比較する")
+    void compareStreaming() throws Exception {
+        // application.propertiesより優先されるよう、コマンドライン引数として渡す
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootTutorialApplication.class)
+                .run("--server.port=0",
+                        "--spring.sql.init.mode=never",
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--spring.task.execution.pool.core-size=" + (SLOW_CLIENTS * 2),
+                        "--spring.task.execution.pool.max-size=" + (SLOW_CLIENTS * 2),
+                        "--item.rate-limit.requests-per-second=0",
+                        "--item.load-shedding.max-pool-waiters=0",
+                        "--logging.level.root=WARN")) {
+            context.getBean(ItemSeeder.class).seedSynthetic(ROWS);
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            Result blocking = run(URI.create(base + "/items/stream"), URI.create(base + "/items/page?size=20"));
+            Result paged = run(URI.create(base + "/async/items/stream"), URI.create(base + "/items/page?size=20"));
+
+            System.out.printf("rows=%d pool=%d slowClients=%d probes=%d%n", ROWS, POOL_SIZE, SLOW_CLIENTS, PROBES);
+            blocking.print("/items/stream");
+            paged.print("/async/items/stream");
+
+            // 比較の前提として、どちらも全件を受信できていること
+            assertThat(blocking.streamErrors()).isZero();
+            assertThat(paged.streamErrors()).isZero();
+        }
+    }
+
+    private Result run(URI streamUri, URI probeUri) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        AtomicInteger streamErrors = new AtomicInteger();
+        AtomicBoolean streaming = new AtomicBoolean(true);
+        long[] latencies = new long[PROBES];
+        AtomicInteger probeErrors = new AtomicInteger();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int c = 0; c < SLOW_CLIENTS; c++) {
+                readers.add(clients.submit(() -> {
+                    if (readSlowly(client, streamUri) != ROWS) {
+                        streamErrors.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            // 遅いクライアントが受信を始めてから計測する
+            Thread.sleep(500);
+            HttpRequest probe = HttpRequest.newBuilder(probeUri).header("Authorization", AUTHORIZATION).GET().build();
+            for (int i = 0; i < PROBES && streaming.get(); i++) {
+                long begin = System.nanoTime();
+                try {
+                    if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                        probeErrors.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    probeErrors.incrementAndGet();
+                }
+                latencies[i] = System.nanoTime() - begin;
+                streaming.set(readers.stream().anyMatch(reader -> !reader.isDone()));
+            }
+        }  // closeで全クライアントの終了を待つ
+        return Result.of(latencies, probeErrors.get(), streamErrors.get());
+    }
+
+    // 16KBずつ間を空けて読み、受信した行数を返す
+    private static long readSlowly(HttpClient client, URI uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Authorization", AUTHORIZATION).GET().build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        long lines = 0;
+        byte[] buffer = new byte[16 * 1024];
+        try (InputStream body = response.body()) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                Thread.sleep(READ_PAUSE_MILLIS);
+            }
+        }
+        return response.statusCode() == 200 ? lines : -1;
+    }
+
+    private record Result(int probes, double p50Millis, double p99Millis, double maxMillis,
+                          int probeErrors, int streamErrors) {
+
+        static Result of(long[] latencies, int probeErrors, int streamErrors) {
+            // ストリームが先に終わった場合、計測しなかった分（0）は除く
+            long[] sorted = Arrays.stream(latencies).filter(latency -> latency > 0).sorted().toArray();
+            if (sorted.length == 0) {
+                return new Result(0, 0, 0, 0, probeErrors, streamErrors);
+            }
+            return new Result(sorted.length,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6,
+                    probeErrors,
+                    streamErrors);
+        }
+
+        static double percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+
+        void print(String mode) {
+            System.out.printf("%-20s probes=%d p50=%.2f ms p99=%.2f ms max=%.2f ms probeErrors=%d streamErrors=%d%n",
+                    mode, probes, p50Millis, p99Millis, maxMillis, probeErrors, streamErrors);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.springboot_tutorial.loadtest;
+
+import com.example.springboot_tutorial.SpringbootTutorialApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * プラットフォームスレッド（デフォルト）と仮想スレッドモードの比較
+ * アプリケーションをそれぞれのモードで起動し、同じ負荷をかけてスループットとレイテンシを出力する
+ */
+class ThreadModelLoadTest {
+
+    // 同時に接続するクライアント数と、計測するリクエスト数
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 200);
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 5000);
+
+    @Test
+    @DisplayName("プラットフォームスレッドと仮想スレッドでスループットとレイテンシを比較する")
+    void compareThreadModels() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("concurrency=%d requests=%d%n", CONCURRENCY, REQUESTS);
+        platform.print("platform");
+        virtual.print("virtual");
+
+        // 比較の前提として、どちらのモードでも全リクエストが成功していること
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+    }
+
+    private Result run(boolean virtualThreads) throws InterruptedException {
+        // application.propertiesより優先されるよう、コマンドライン引数として渡す
+        // スレッドモデルそのものを比べるため、流量制限と過負荷時の拒否は止める
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootTutorialApplication.class)
+                .run("--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--item.rate-limit.requests-per-second=0",
+                        "--item.load-shedding.max-in-flight=0",
+                        "--item.load-shedding.max-pool-waiters=0")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/items/page?size=20");
+            drive(uri, REQUESTS / 10);  // JITとコネクションプールのウォームアップ
+            return drive(uri, REQUESTS);
+        }
+    }
+
+    // CONCURRENCY個のクライアントが、合計requests件に達するまでリクエストを送り続ける
+    private Result drive(URI uri, int requests) throws InterruptedException {
+        String authorization = "Basic " + Base64.getEncoder()
+                .encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Authorization", authorization).GET().build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONCURRENCY; c++) {
+                clients.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                });
+            }
+        }  // closeで全クライアントの終了を待つ
+        return Result.of(latencies, System.nanoTime() - start, errors.get());
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, double maxMillis, int errors) {
+
+        static Result of(long[] latencies, long elapsedNanos, int errors) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return new Result(
+                    sorted.length / (elapsedNanos / 1e9),
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6,
+                    errors);
+        }
+
+        static double percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+
+        void print(String mode) {
+            System.out.printf("%-8s throughput=%.1f req/s p50=%.2f ms p99=%.2f ms max=%.2f ms errors=%d%n",
+                    mode, throughput, p50Millis, p99Millis, maxMillis, errors);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.springboot_tutorial.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * オープンモデルで負荷をかける（応答を待たずに、決められた到着率でリクエストを送り続ける）
+ * 到着間隔は指数分布（ポアソン到着）で、乱数のシードを固定しているため、同じ設定なら同じ順序でリクエストを送る
+ * 1リクエストごとに仮想スレッドで送信し、レイテンシは送信予定の時刻から応答の受信までを記録する
+ * （サーバーが遅れて送信自体が遅れた分も含めるため、遅延を過小評価しない）
+ * 同時に応答を待てるリクエスト数（maxClients）を超えた到着は送らずにdroppedとして数える
+ */
+final class WorkloadDriver {
+
+    // 記録できるレイテンシの上限（マイクロ秒）と有効桁数
+    private static final long HIGHEST_LATENCY_MICROS = Duration.ofMinutes(1).toNanos() / 1000;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final WorkloadProfile.Target target;
+    private final int maxClients;
+
+    WorkloadDriver(WorkloadProfile.Target target, int maxClients) {
+        this.target = target;
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * プロファイルの負荷をduration の間かけ、送信中のリクエストの完了を待って結果を返す
+     * @param rate 1秒あたりの到着数（集中時はプロファイルの倍率を掛ける）
+     * @param seed 到着間隔・操作・IDを選ぶ乱数のシード
+     */
+    Result run(WorkloadProfile profile, double rate, Duration duration, long seed) {
+        Histogram total = newHistogram();
+        Map<String, Histogram> byOperation = new LinkedHashMap<>();
+        profile.operations().forEach(operation -> byOperation.put(operation.name(), newHistogram()));
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        AtomicLong transportErrors = new AtomicLong();
+        long dropped = 0;
+        long sent = 0;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Semaphore clients = new Semaphore(maxClients);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long scheduled = start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (scheduled < end) {
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                WorkloadProfile.Operation operation = profile.pick(random);
+                HttpRequest request = operation.factory().create(target, random);
+                if (clients.tryAcquire()) {
+                    sent++;
+                    long intended = scheduled;
+                    Histogram histogram = byOperation.get(operation.name());
+                    executor.submit(() -> {
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            statuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                        } catch (IOException e) {
+                            transportErrors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            transportErrors.incrementAndGet();
+                        } finally {
+                            long micros = Math.min((System.nanoTime() - intended) / 1000, HIGHEST_LATENCY_MICROS);
+                            total.recordValue(micros);
+                            histogram.recordValue(micros);
+                            clients.release();
+                        }
+                    });
+                } else {
+                    dropped++;
+                }
+                // 次の到着時刻（指数分布の間隔）
+                double currentRate = profile.rateAt(rate, scheduled - start);
+                scheduled += (long) (-Math.log(1 - random.nextDouble()) / currentRate * 1e9);
+            }
+        }  // closeで送信中のリクエストの完了を待つ
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        return new Result(profile.name(), rate, duration, elapsedNanos, sent, dropped, transportErrors.get(),
+                statusCounts, total, byOperation);
+    }
+
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * 1つのプロファイルの結果
+     * @param sent 送信したリクエスト数
+     * @param dropped 同時に待てる数を超えたため送らなかった到着数
+     * @param transportErrors 接続エラーなどで応答を受け取れなかった数
+     * @param statuses HTTPステータスごとの応答数
+     * @param latencies 全操作のレイテンシ（マイクロ秒）
+     * @param operationLatencies 操作ごとのレイテンシ（マイクロ秒）
+     */
+    record Result(String profile, double targetRate, Duration duration, long elapsedNanos, long sent, long dropped,
+                  long transportErrors, Map<Integer, Long> statuses, Histogram latencies,
+                  Map<String, Histogram> operationLatencies) {
+
+        // 2xx以外の応答と、応答を受け取れなかった数
+        long errors() {
+            long failedResponses = statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() < 200 || entry.getKey() >= 300)
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+            return failedResponses + transportErrors;
+        }
+
+        double throughput() {
+            return latencies.getTotalCount() / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.springboot_tutorial.loadtest;
+
+import com.example.springboot_tutorial.SpringbootTutorialApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 混在したトラフィック（WorkloadProfile）をオープンモデルでかけ、スループットとレイテンシのパーセンタイルを出力する
+ * プロファイルごとにアプリケーションを起動し直し、同じ件数のアイテムを投入してから計測する
+ * 結果はJSON（既定では build/loadtest/workload.json）に出力し、コミット間で比較できるようにする
+ */
+class WorkloadLoadTest {
+
+    private static final List<String> PROFILES = Arrays.stream(
+            System.getProperty("loadtest.workload.profiles", "read-heavy,write-burst,large-list").split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .toList();
+    private static final int ROWS = Integer.getInteger("loadtest.rows", 10_000);
+    // 1秒あたりの到着数・計測時間・ウォームアップ時間（秒）
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.workload.rate", "500"));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.workload.duration", 30));
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.workload.warmup", 10));
+    // 同時に応答を待てるクライアント数
+    private static final int MAX_CLIENTS = Integer.getInteger("loadtest.workload.max-clients", 1000);
+    private static final long SEED = Long.getLong("loadtest.workload.seed", 42);
+    // ウォームアップは計測と別のシードにする（同じ順序のリクエストを先に送ると、計測で読むアイテムがすべてキャッシュ済みになる）
+    private static final long WARMUP_SEED = ~SEED;
+    private static final String USER = System.getProperty("loadtest.user", "user");
+    private static final String PASSWORD = System.getProperty("loadtest.password", "password");
+    private static final Path OUTPUT = Path.of(System.getProperty("loadtest.workload.output", "build/loadtest/workload.json"));
+    // 追加のアプリケーション引数（空白区切り）。例: --item.catalog-index.enabled=true
+    private static final String APP_ARGS = System.getProperty("loadtest.workload.app-args", "");
+
+    @Test
+    @DisplayName("プロファイルごとに負荷をかけ、スループットとレイテンシをJSONに出力する")
+    void runWorkloads() throws Exception {
+        List<WorkloadDriver.Result> results = new ArrayList<>();
+        for (String name : PROFILES) {
+            results.add(run(WorkloadProfile.named(name)));
+        }
+
+        System.out.printf("rows=%d rate=%.0f req/s duration=%ds maxClients=%d%n",
+                ROWS, RATE, DURATION.toSeconds(), MAX_CLIENTS);
+        results.forEach(WorkloadLoadTest::print);
+        write(results);
+        System.out.println("written to " + OUTPUT.toAbsolutePath());
+
+        // 比較の前提として、どのプロファイルでもリクエストを送れていること
+        results.forEach(result -> assertThat(result.sent()).as(result.profile()).isPositive());
+    }
+
+    private WorkloadDriver.Result run(WorkloadProfile profile) {
+        // application.propertiesより優先されるよう、コマンドライン引数として渡す
+        // アプリケーションそのものの性能を測るため、流量制限と過負荷時の拒否は止める
+        // アイテムは起動中にItemSeeder（ApplicationRunner）で投入する。起動完了（ApplicationReadyEvent）で
+        // 読み込むカタログ索引・集計が、投入後のテーブルを読むように（起動後に投入しても変更の通知は送られない）
+        String[] args = Stream.concat(
+                Stream.of("--server.port=0",
+                        "--spring.sql.init.mode=never",
+                        "--item.seed.rows=" + ROWS,
+                        "--item.rate-limit.requests-per-second=0",
+                        "--item.load-shedding.max-in-flight=0",
+                        "--item.load-shedding.max-pool-waiters=0",
+                        "--logging.level.root=WARN"),
+                Arrays.stream(APP_ARGS.trim().split("\\s+")).filter(arg -> !arg.isEmpty()))
+                .toArray(String[]::new);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootTutorialApplication.class)
+                .sources(LoadTestCsrfController.class)
+                .run(args)) {
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            String authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+
+            WorkloadDriver driver = new WorkloadDriver(target(base, authorization), MAX_CLIENTS);
+            driver.run(profile, RATE, WARMUP, WARMUP_SEED);  // JITとコネクションプールのウォームアップ（結果は捨てる）
+            return driver.run(profile, RATE, DURATION, SEED);
+        }
+    }
+
+    // CSRFトークン（とそれを保存したセッション）を取得し、投入したアイテムのIDをAPIで集める
+    // シャードを使う場合はIDが連番にならないため、1〜ROWSと決めつけない
+    private static WorkloadProfile.Target target(String base, String authorization) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            HttpResponse<String> csrf = client.send(HttpRequest.newBuilder(URI.create(base + LoadTestCsrfController.PATH))
+                    .header("Authorization", authorization).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertThat(csrf.statusCode()).as("CSRFトークンの取得").isEqualTo(200);
+            JsonNode token = mapper.readTree(csrf.body());
+            String sessionCookie = csrf.headers().allValues("Set-Cookie").stream()
+                    .map(cookie -> cookie.split(";", 2)[0])
+                    .filter(cookie -> cookie.startsWith("JSESSIONID="))
+                    .findFirst()
+                    .orElse(null);
+            WorkloadProfile.Target withoutIds = new WorkloadProfile.Target(base, authorization,
+                    token.get("headerName").asText(), token.get("token").asText(), sessionCookie, new long[0]);
+
+            List<Long> ids = new ArrayList<>(ROWS);
+            String cursor = "";
+            do {
+                HttpResponse<String> page = client.send(withoutIds.request("/items/page?size=1000" + cursor).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(page.statusCode()).as("アイテムIDの取得").isEqualTo(200);
+                JsonNode body = mapper.readTree(page.body());
+                body.get("items").forEach(item -> ids.add(item.get("id").asLong()));
+                cursor = body.get("nextCursor").isNull() ? null : "&after=" + body.get("nextCursor").asLong();
+            } while (cursor != null);
+            assertThat(ids).as("投入したアイテム").isNotEmpty();
+            return new WorkloadProfile.Target(base, authorization, withoutIds.csrfHeader(), withoutIds.csrfToken(),
+                    sessionCookie, ids.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    private static void print(WorkloadDriver.Result result) {
+        Histogram latencies = result.latencies();
+        System.out.printf("%-12s throughput=%.1f req/s p50=%.2f ms p99=%.2f ms p99.9=%.2f ms max=%.2f ms errors=%d dropped=%d%n",
+                result.profile(), result.throughput(),
+                millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMaxValue()),
+                result.errors(), result.dropped());
+    }
+
+    private static void write(List<WorkloadDriver.Result> results) throws Exception {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("rows", ROWS);
+        root.put("maxClients", MAX_CLIENTS);
+        root.put("seed", SEED);
+        root.put("warmupSeed", WARMUP_SEED);
+        root.put("appArgs", APP_ARGS);
+        Map<String, Object> profiles = new LinkedHashMap<>();
+        for (WorkloadDriver.Result result : results) {
+            Map<String, Object> profile = new LinkedHashMap<>();
+            profile.put("targetRate", result.targetRate());
+            profile.put("durationSeconds", result.duration().toSeconds());
+            profile.put("requests", result.sent());
+            profile.put("throughput", round(result.throughput()));
+            profile.put("errors", result.errors());
+            profile.put("dropped", result.dropped());
+            profile.put("statuses", result.statuses());
+            profile.put("latencyMillis", summary(result.latencies()));
+            Map<String, Object> operations = new LinkedHashMap<>();
+            result.operationLatencies().forEach((name, histogram) -> {
+                Map<String, Object> operation = new LinkedHashMap<>();
+                operation.put("requests", histogram.getTotalCount());
+                operation.put("latencyMillis", summary(histogram));
+                operations.put(name, operation);
+            });
+            profile.put("operations", operations);
+            // 後からHdrHistogramで読み戻して、別のパーセンタイルやグラフを出せるようにする
+            profile.put("histogram", encode(result.latencies()));
+            profiles.put(result.profile(), profile);
+        }
+        root.put("profiles", profiles);
+
+        Files.createDirectories(OUTPUT.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(OUTPUT.toFile(), root);
+    }
+
+    private static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (histogram.getTotalCount() == 0) {
+            return summary;
+        }
+        summary.put("p50", millis(histogram.getValueAtPercentile(50)));
+        summary.put("p90", millis(histogram.getValueAtPercentile(90)));
+        summary.put("p99", millis(histogram.getValueAtPercentile(99)));
+        summary.put("p99.9", millis(histogram.getValueAtPercentile(99.9)));
+        summary.put("max", millis(histogram.getMaxValue()));
+        summary.put("mean", round(histogram.getMean() / 1000));
+        return summary;
+    }
+
+    // 圧縮したヒストグラムのBase64（Histogram.decodeFromCompressedByteBufferで読み戻せる）
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    // ヒストグラムはマイクロ秒で記録している
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
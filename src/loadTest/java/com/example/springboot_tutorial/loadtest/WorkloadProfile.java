@@ -0,0 +1,136 @@
+package com.example.springboot_tutorial.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 負荷テスト（WorkloadLoadTest）で送るリクエストの組み合わせ
+ * 各操作を重みの割合で選ぶ。burstFactorが1より大きい場合は、burstPeriodごとにburstLengthの間だけ到着率をburstFactor倍にする
+ * @param name プロファイル名（-Dloadtest.workload.profiles で指定する名前）
+ * @param operations 操作と重み
+ * @param burstFactor 集中時の到着率の倍率（1なら一定）
+ * @param burstPeriod 集中の周期
+ * @param burstLength 1回の集中の長さ
+ */
+record WorkloadProfile(String name, List<Operation> operations, double burstFactor,
+                       Duration burstPeriod, Duration burstLength) {
+
+    private static final String JSON = "application/json";
+
+    /**
+     * 名前からプロファイルを返す
+     * read-heavy: 1件取得95%・価格の更新5%
+     * write-burst: 登録・価格の更新が半分で、10秒ごとに2秒間、到着率が4倍になる
+     * large-list: ページ単位の取得（1000件）・価格順の検索・全件の一覧
+     */
+    static WorkloadProfile named(String name) {
+        return switch (name) {
+            case "read-heavy" -> new WorkloadProfile(name, List.of(
+                    new Operation("GET /items/{id}", 95, Operation::getById),
+                    new Operation("PATCH /items/{id}/price", 5, Operation::updatePrice)),
+                    1, Duration.ZERO, Duration.ZERO);
+            case "write-burst" -> new WorkloadProfile(name, List.of(
+                    new Operation("GET /items/{id}", 50, Operation::getById),
+                    new Operation("POST /items", 25, Operation::create),
+                    new Operation("PATCH /items/{id}/price", 25, Operation::updatePrice)),
+                    4, Duration.ofSeconds(10), Duration.ofSeconds(2));
+            case "large-list" -> new WorkloadProfile(name, List.of(
+                    new Operation("GET /items/page", 60, Operation::getPage),
+                    new Operation("GET /items/search", 30, Operation::searchByPrice),
+                    new Operation("GET /items", 10, Operation::getAll)),
+                    1, Duration.ZERO, Duration.ZERO);
+            default -> throw new IllegalArgumentException("Unknown workload profile: " + name);
+        };
+    }
+
+    // 重みの割合で操作を選ぶ
+    Operation pick(SplittableRandom random) {
+        int total = operations.stream().mapToInt(Operation::weight).sum();
+        int value = random.nextInt(total);
+        for (Operation operation : operations) {
+            value -= operation.weight();
+            if (value < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("No operation selected.");
+    }
+
+    // 開始からの経過時間における到着率
+    double rateAt(double baseRate, long elapsedNanos) {
+        if (burstFactor <= 1 || burstPeriod.isZero()) {
+            return baseRate;
+        }
+        boolean bursting = elapsedNanos % burstPeriod.toNanos() < burstLength.toNanos();
+        return bursting ? baseRate * burstFactor : baseRate;
+    }
+
+    /**
+     * 負荷テストの対象（アプリケーションのURL・認証情報と、投入済みのアイテムのID）
+     * 登録・更新のリクエストには、ログイン時に取得したCSRFトークンとセッションのCookieを付ける
+     * @param ids 投入済みのアイテムのID（シャードを使う場合は連番にならないため、起動後にAPIで取得する）
+     */
+    record Target(String baseUrl, String authorization, String csrfHeader, String csrfToken, String sessionCookie,
+                  long[] ids) {
+
+        HttpRequest.Builder request(String path) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Authorization", authorization)
+                    .header(csrfHeader, csrfToken);
+            return sessionCookie == null ? builder : builder.header("Cookie", sessionCookie);
+        }
+    }
+
+    /**
+     * 1種類の操作
+     * @param name 結果に出力する操作名
+     * @param weight 選ばれる割合の重み
+     * @param factory リクエストを作る処理（乱数で対象のIDや価格を選ぶ）
+     */
+    record Operation(String name, int weight, RequestFactory factory) {
+
+        static HttpRequest getById(Target target, SplittableRandom random) {
+            return target.request("/items/" + randomId(target, random)).GET().build();
+        }
+
+        static HttpRequest updatePrice(Target target, SplittableRandom random) {
+            return target.request("/items/" + randomId(target, random) + "/price")
+                    .header("Content-Type", JSON)
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"price\":" + random.nextInt(10000) + "}"))
+                    .build();
+        }
+
+        static HttpRequest create(Target target, SplittableRandom random) {
+            String body = "{\"name\":\"load-" + random.nextInt(1_000_000) + "\",\"price\":" + random.nextInt(10000) + "}";
+            return target.request("/items")
+                    .header("Content-Type", JSON)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        static HttpRequest getPage(Target target, SplittableRandom random) {
+            return target.request("/items/page?size=1000&after=" + randomId(target, random)).GET().build();
+        }
+
+        static HttpRequest searchByPrice(Target target, SplittableRandom random) {
+            return target.request("/items/search?sort=PRICE&limit=1000&minPrice=" + random.nextInt(10000)).GET().build();
+        }
+
+        static HttpRequest getAll(Target target, SplittableRandom random) {
+            return target.request("/items").GET().build();
+        }
+
+        // 投入済みのアイテムから選ぶ
+        private static long randomId(Target target, SplittableRandom random) {
+            return target.ids()[random.nextInt(target.ids().length)];
+        }
+    }
+
+    @FunctionalInterface
+    interface RequestFactory {
+        HttpRequest create(Target target, SplittableRandom random);
+    }
+}
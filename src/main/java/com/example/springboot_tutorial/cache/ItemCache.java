@@ -0,0 +1,205 @@
+package com.example.springboot_tutorial.cache;
+
+import com.example.springboot_tutorial.model.Item;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * findById用のリードスルーキャッシュ
+ * 件数上限（LRU）と有効期限で古いエントリを追い出す。見つからなかったIDも短い期限でキャッシュする
+ */
+@Component
+public class ItemCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    // アクセス順のLinkedHashMap。上限を超えたら最も使われていないエントリを削除する（thisで排他）
+    private final Map<Long, Entry> entries;
+
+    // 書き込みのたびに進める世代番号。読み込み中に書き込みがあった場合、古い値をキャッシュに入れないために使う
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ItemCache(@Value("${item.cache.max-size:10000}") int maxSize,
+                     @Value("${item.cache.ttl:60s}") Duration ttl,
+                     @Value("${item.cache.negative-ttl:5s}") Duration negativeTtl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > ItemCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * キャッシュからアイテムを取得し、なければloaderで読み込んでキャッシュする
+     * @param id アイテムID
+     * @param loader キャッシュにない場合の読み込み処理
+     * @return アイテム（存在しない場合は空）。キャッシュ済みの値はコピーを返すので、呼び出し側で変更してよい
+     */
+    public Optional<Item> get(Long id, Function<Long, Optional<Item>> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return Optional.ofNullable(entry.item).map(ItemCache::copy);
+                }
+                entries.remove(id);
+                evictions.increment();
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        Optional<Item> loaded = loader.apply(id);
+        synchronized (this) {
+            // 読み込み中に書き込みがあった場合、読み込んだ値は古い可能性があるのでキャッシュしない
+            if (generation == loadGeneration) {
+                store(id, loaded.map(ItemCache::copy).orElse(null));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 複数のIDをまとめて取得し、キャッシュにないIDだけをloaderで1回で読み込んでキャッシュする
+     * @param ids アイテムID
+     * @param loader キャッシュにないIDを受け取り、見つかったアイテムを返す読み込み処理
+     * @return ID → アイテム（存在しないIDは含まない）。呼び出し側で変更してよい
+     */
+    public Map<Long, Item> getAll(Collection<Long> ids, Function<Set<Long>, List<Item>> loader) {
+        Map<Long, Item> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        long loadGeneration;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Long id : ids) {
+                Entry entry = entries.get(id);
+                if (entry != null && entry.expiresAt - now > 0) {
+                    hits.increment();
+                    if (entry.item != null) {
+                        found.put(id, copy(entry.item));
+                    }
+                } else {
+                    if (entry != null) {
+                        entries.remove(id);
+                        evictions.increment();
+                    }
+                    missing.add(id);
+                }
+            }
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        misses.add(missing.size());
+        Map<Long, Item> loaded = new HashMap<>();
+        for (Item item : loader.apply(missing)) {
+            loaded.put(item.getId(), item);
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                for (Long id : missing) {
+                    Item item = loaded.get(id);
+                    store(id, item != null ? copy(item) : null);
+                }
+            }
+        }
+        found.putAll(loaded);
+        return found;
+    }
+
+    /**
+     * キャッシュ済みの値だけを返し、なければ読み込まない（ヒット・ミスには数えない）
+     * @param id アイテムID
+     * @return キャッシュ済みのアイテムのコピー（キャッシュにない・期限切れ・存在しないとしてキャッシュ済みの場合は空）
+     */
+    public synchronized Optional<Item> peek(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null || entry.item == null || entry.expiresAt - System.nanoTime() <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(entry.item));
+    }
+
+    /**
+     * 書き込み後の最新の値でキャッシュを更新する
+     * @param item 保存済みのアイテム
+     */
+    public synchronized void put(Item item) {
+        generation++;
+        store(item.getId(), copy(item));
+    }
+
+    /**
+     * 指定したIDのエントリを削除する
+     * @param id アイテムID
+     */
+    public synchronized void evict(Long id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    /**
+     * 全エントリを削除する
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * ヒット数・ミス数・追い出し数と現在の件数を返す
+     */
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    // itemがnullの場合は「存在しない」ことを短い期限でキャッシュする。呼び出し側でthisを排他していること
+    private void store(Long id, Item item) {
+        long ttl = item != null ? ttlNanos : negativeTtlNanos;
+        entries.put(id, new Entry(item, System.nanoTime() + ttl));
+    }
+
+    private static Item copy(Item item) {
+        return item.toBuilder().build();
+    }
+
+    private record Entry(Item item, long expiresAt) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+}
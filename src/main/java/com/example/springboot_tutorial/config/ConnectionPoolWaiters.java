@@ -0,0 +1,88 @@
+package com.example.springboot_tutorial.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+/**
+ * DBコネクションの空きを待っているスレッド数
+ * HikariCPのプールで待っている数と、仮想スレッドモードの同時接続数制限で待っている数の合計
+ * 対象はDataSourceのBeanすべて（複数ある場合も）と、Beanにしていないレプリカ（ReplicaPools）・シャード（ItemShards）のプール
+ * 対象のプールは最初の呼び出しで一度だけ探し、見つからなかった場合もその結果を使い続ける
+ * プール自体は最初のコネクション取得時に作られるため、作られるまでは0として数える
+ */
+public class ConnectionPoolWaiters implements IntSupplier {
+
+    private final ObjectProvider<DataSource> dataSources;
+    private final ObjectProvider<ReplicaPools> replicaPools;
+    private final ObjectProvider<ItemShards> itemShards;
+    private volatile Targets targets;
+
+    public ConnectionPoolWaiters(ObjectProvider<DataSource> dataSources,
+                                 ObjectProvider<ReplicaPools> replicaPools,
+                                 ObjectProvider<ItemShards> itemShards) {
+        this.dataSources = dataSources;
+        this.replicaPools = replicaPools;
+        this.itemShards = itemShards;
+    }
+
+    @Override
+    public int getAsInt() {
+        Targets current = targets;
+        if (current == null) {
+            current = resolve();
+            targets = current;
+        }
+        int waiters = 0;
+        for (HikariDataSource pool : current.pools()) {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            if (bean != null) {
+                waiters += bean.getThreadsAwaitingConnection();
+            }
+        }
+        for (ConcurrencyLimitingDataSource limiter : current.limiters()) {
+            waiters += limiter.getQueueLength();
+        }
+        return waiters;
+    }
+
+    // 同じプールを別の経路（ReplicaRoutingDataSourceとReplicaPoolsなど）で見つけても1回だけ数える
+    private Targets resolve() {
+        Set<HikariDataSource> pools = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ConcurrencyLimitingDataSource> limiters = Collections.newSetFromMap(new IdentityHashMap<>());
+        dataSources.orderedStream().forEach(dataSource -> {
+            try {
+                if (dataSource.isWrapperFor(ConcurrencyLimitingDataSource.class)) {
+                    limiters.add(dataSource.unwrap(ConcurrencyLimitingDataSource.class));
+                }
+                if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                    pools.add(dataSource.unwrap(HikariDataSource.class));
+                }
+            } catch (SQLException e) {
+                // 取得できなければ待ちはないものとして扱う
+            }
+        });
+        replicaPools.ifAvailable(replicas -> {
+            pools.add(replicas.primary());
+            pools.addAll(replicas.replicas());
+        });
+        itemShards.ifAvailable(shards -> shards.dataSources().forEach(dataSource -> {
+            if (dataSource instanceof HikariDataSource pool) {
+                pools.add(pool);
+            }
+        }));
+        return new Targets(new ArrayList<>(pools), new ArrayList<>(limiters));
+    }
+
+    private record Targets(List<HikariDataSource> pools, List<ConcurrencyLimitingDataSource> limiters) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.springboot_tutorial.config;
+
+import com.example.springboot_tutorial.service.ShardedIdGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * アイテムを分けて保存するシャード（データベース）と、バケット → シャードの対応
+ * IDに埋め込まれたバケット（ShardedIdGenerator）で保存先を決める。対応は1台目のシャードのitem_shard_map表に保存し、
+ * 初回の起動時は「バケット番号 % シャード数」で割り当てる（後からシャードを追加してもIDは変わらない）
+ * 1件ずつの読み書きはバケットの読み込みロックを取って行い、バケットの移動（ShardRebalancer）は書き込みロックを取る
+ */
+public class ItemShards implements AutoCloseable {
+
+    private static final List<String> SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS item (id BIGINT PRIMARY KEY, name VARCHAR(255), price INT, "
+                    + "version BIGINT NOT NULL, bucket INT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_item_name ON item (name)",
+            "CREATE INDEX IF NOT EXISTS idx_item_price ON item (price)",
+            "CREATE INDEX IF NOT EXISTS idx_item_bucket ON item (bucket)");
+    private static final String CREATE_MAP =
+            "CREATE TABLE IF NOT EXISTS item_shard_map (bucket INT PRIMARY KEY, shard INT NOT NULL)";
+
+    private final List<? extends DataSource> dataSources;
+    private final List<Shard> shards;
+    private final ReentrantReadWriteLock[] bucketLocks = new ReentrantReadWriteLock[ShardedIdGenerator.BUCKETS];
+    // バケット → シャード番号（変更時は配列ごと置き換える）
+    private volatile int[] owners;
+
+    /**
+     * 各シャードに表がなければ作成し、バケットの対応を読み込む
+     * @param dataSources シャードのDataSource（順番がシャード番号になるため、追加する場合は末尾に加える）
+     */
+    public ItemShards(List<? extends DataSource> dataSources) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.dataSources = dataSources;
+        List<Shard> created = new ArrayList<>(dataSources.size());
+        for (int i = 0; i < dataSources.size(); i++) {
+            DataSource dataSource = dataSources.get(i);
+            Shard shard = new Shard(i, new JdbcTemplate(dataSource),
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+            SCHEMA.forEach(shard.jdbc()::execute);
+            created.add(shard);
+        }
+        this.shards = List.copyOf(created);
+        for (int bucket = 0; bucket < bucketLocks.length; bucket++) {
+            bucketLocks[bucket] = new ReentrantReadWriteLock();
+        }
+        this.owners = loadOwners();
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public List<Shard> all() {
+        return shards;
+    }
+
+    public Shard get(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * シャードのDataSource（シャード番号順）
+     */
+    public List<? extends DataSource> dataSources() {
+        return dataSources;
+    }
+
+    /**
+     * IDのバケットを持つシャードで処理する（処理中はそのバケットが移動しない）
+     */
+    public <T> T route(long id, Function<Shard, T> action) {
+        int bucket = ShardedIdGenerator.bucketOf(id);
+        Lock lock = bucketLocks[bucket].readLock();
+        lock.lock();
+        try {
+            return action.apply(shards.get(owners[bucket]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // IDのバケットを持つシャード（移動中は変わる可能性がある）
+    public Shard ownerOf(long id) {
+        return shards.get(owners[ShardedIdGenerator.bucketOf(id)]);
+    }
+
+    /**
+     * バケットごとのシャード番号（コピー）
+     */
+    public int[] owners() {
+        return owners.clone();
+    }
+
+    /**
+     * バケットを移動する間、そのバケットの読み書きを止めるロック
+     */
+    public Lock bucketWriteLock(int bucket) {
+        return bucketLocks[bucket].writeLock();
+    }
+
+    /**
+     * バケットの持ち主を変更して保存する（bucketWriteLockを取った状態で呼ぶ）
+     */
+    public synchronized void assign(int bucket, int shard) {
+        if (!bucketLocks[bucket].isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Bucket " + bucket + " must be locked before it is reassigned.");
+        }
+        shards.get(0).jdbc().update("UPDATE item_shard_map SET shard = ? WHERE bucket = ?", shard, bucket);
+        int[] updated = owners.clone();
+        updated[bucket] = shard;
+        owners = updated;
+    }
+
+    @Override
+    public void close() {
+        dataSources.forEach(dataSource -> {
+            if (dataSource instanceof HikariDataSource pool) {
+                pool.close();
+            }
+        });
+    }
+
+    private int[] loadOwners() {
+        JdbcTemplate mapJdbc = shards.get(0).jdbc();
+        mapJdbc.execute(CREATE_MAP);
+        int[] loaded = new int[ShardedIdGenerator.BUCKETS];
+        int[] found = {0};
+        mapJdbc.query("SELECT bucket, shard FROM item_shard_map", rs -> {
+            int shard = rs.getInt(2);
+            if (shard >= shards.size()) {
+                throw new IllegalStateException("Bucket " + rs.getInt(1) + " belongs to shard " + shard
+                        + ", but only " + shards.size() + " shards are configured.");
+            }
+            loaded[rs.getInt(1)] = shard;
+            found[0]++;
+        });
+        if (found[0] == loaded.length) {
+            return loaded;
+        }
+        if (found[0] > 0) {
+            throw new IllegalStateException("item_shard_map is incomplete: " + found[0] + " of " + loaded.length + " buckets.");
+        }
+        // 初回の起動
+        List<Object[]> rows = new ArrayList<>(loaded.length);
+        for (int bucket = 0; bucket < loaded.length; bucket++) {
+            loaded[bucket] = bucket % shards.size();
+            rows.add(new Object[]{bucket, loaded[bucket]});
+        }
+        shards.get(0).transaction().executeWithoutResult(status ->
+                mapJdbc.batchUpdate("INSERT INTO item_shard_map (bucket, shard) VALUES (?, ?)", rows));
+        return loaded;
+    }
+
+    /**
+     * 1つのシャード
+     * @param index シャード番号
+     * @param jdbc このシャードにSQLを実行する
+     * @param transaction このシャードのトランザクション
+     */
+    public record Shard(int index, JdbcTemplate jdbc, TransactionTemplate transaction) {
+    }
+}
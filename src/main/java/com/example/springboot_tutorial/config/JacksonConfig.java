@@ -0,0 +1,40 @@
+package com.example.springboot_tutorial.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * レスポンスの形式（JSON・Smile・CBOR）とJacksonの設定
+ * Acceptヘッダに application/x-jackson-smile または application/cbor を指定すると、JSONと同じ内容をバイナリで返す
+ * 指定がなければ従来どおりJSONを返す
+ */
+@Configuration
+public class JacksonConfig {
+
+    // getter・setter・コンストラクタの呼び出しをリフレクションではなく生成したラムダで行い、
+    // シリアライズのCPU時間と割り当てを減らす（Spring BootがObjectMapperに登録する）
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // Spring MVCもSmile・CBORのコンバーターを既定で登録するが、Jackson2ObjectMapperBuilder.smile()/cbor()から作るため
+    // spring.jackson.*の設定やBlackbirdModuleなどのモジュールのBeanが反映されない
+    // ここではSpring Bootのビルダーから作り、JSONと同じ設定にする（同じクラスのBeanは既定のコンバーターと置き換わる）
+    // ビルダーはBeanを取得するたびに新しく作られるので、factoryを変えてもJSON用のObjectMapperには影響しない
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
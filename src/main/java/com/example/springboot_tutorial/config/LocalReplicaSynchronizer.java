@@ -0,0 +1,117 @@
+package com.example.springboot_tutorial.config;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ローカル確認用に、プライマリの変更を別のH2データベース（レプリカ）へ遅れて反映する
+ * 実際のレプリケーション（DBの機能）の代わりで、item.datasource.replicas.local-replication=true の時だけ有効になる
+ * 起動時にスキーマを作って全件を複製し、以降はItemChangedEventを一定時間（lag）遅らせて1スレッドで順に反映する
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "item.datasource.replicas.local-replication", havingValue = "true")
+public class LocalReplicaSynchronizer implements DisposableBean {
+
+    private static final String MERGE_SQL = "MERGE INTO item (id, name, price, version) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final int COPY_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas = new ArrayList<>();
+    private final long lagMillis;
+    private final ScheduledExecutorService replicator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "local-replication");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalReplicaSynchronizer(ReplicaPools replicaPools,
+                                    @Value("${item.datasource.replicas.local-replication-lag:200ms}") Duration lag) {
+        this.primary = new JdbcTemplate(replicaPools.primary());
+        this.lagMillis = lag.toMillis();
+        // 最初の読み込みより前にテーブルを用意する（中身は起動完了時に複製する）
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("db/schema.sql"));
+        for (HikariDataSource replica : replicaPools.replicas()) {
+            schema.execute(replica);
+            replicas.add(new JdbcTemplate(replica));
+        }
+    }
+
+    // 初期データの投入（data.sql・ItemSeeder）が終わった後に全件を複製する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        replicator.execute(this::copyAll);
+    }
+
+    @EventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        Item after = event.after() == null ? null : event.after().toBuilder().build();
+        replicator.schedule(() -> apply(event.id(), after), lagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    public void onItemsImported(ItemsImportedEvent event) {
+        replicator.schedule(this::copyAll, lagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 変更後の行で上書きする（削除の場合は消す）
+    private void apply(Long id, Item after) {
+        for (JdbcTemplate replica : replicas) {
+            try {
+                if (after == null) {
+                    replica.update("DELETE FROM item WHERE id = ?", id);
+                } else {
+                    replica.update(MERGE_SQL, after.getId(), after.getName(), after.getPrice(), after.getVersion());
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to replicate item {}.", id, e);
+            }
+        }
+    }
+
+    private void copyAll() {
+        for (JdbcTemplate replica : replicas) {
+            try {
+                replica.update("DELETE FROM item");
+                List<Object[]> chunk = new ArrayList<>(COPY_CHUNK_SIZE);
+                primary.query("SELECT id, name, price, version FROM item", rs -> {
+                    chunk.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getObject(3), rs.getObject(4)});
+                    if (chunk.size() == COPY_CHUNK_SIZE) {
+                        replica.batchUpdate(MERGE_SQL, chunk);
+                        chunk.clear();
+                    }
+                });
+                if (!chunk.isEmpty()) {
+                    replica.batchUpdate(MERGE_SQL, chunk);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to copy items to a replica.", e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        replicator.shutdownNow();
+    }
+}
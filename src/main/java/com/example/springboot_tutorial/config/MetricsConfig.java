@@ -0,0 +1,207 @@
+package com.example.springboot_tutorial.config;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.controller.ItemChangeStream;
+import com.example.springboot_tutorial.metrics.FirstRequestTimingFilter;
+import com.example.springboot_tutorial.metrics.JdbcStatementCounter;
+import com.example.springboot_tutorial.metrics.JdbcStatementMetricsFilter;
+import com.example.springboot_tutorial.security.CachingPasswordEncoder;
+import com.example.springboot_tutorial.security.LoadShedder;
+import com.example.springboot_tutorial.security.TokenBucketRateLimiter;
+import com.example.springboot_tutorial.service.ItemCatalogIndex;
+import com.example.springboot_tutorial.service.ItemChangeFeed;
+import com.example.springboot_tutorial.service.ItemLoadCoalescer;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * アプリケーション独自のメトリクスの設定
+ * エンドポイントごとの処理時間（http.server.requests）、コネクションプール（hikaricp.*）、
+ * Hibernateの統計（hibernate.*）はSpring Bootが自動で登録する
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Hibernateが発行するSQL文を数えるStatementInspectorを登録
+    @Bean
+    public HibernatePropertiesCustomizer jdbcStatementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new JdbcStatementCounter());
+    }
+
+    // 1リクエストあたりのSQL文の数を記録するフィルタ
+    @Bean
+    public FilterRegistrationBean<JdbcStatementMetricsFilter> jdbcStatementMetricsFilter(MeterRegistry meterRegistry) {
+        return new FilterRegistrationBean<>(new JdbcStatementMetricsFilter(meterRegistry));
+    }
+
+    // JVMの起動から最初のリクエストに応答するまでの時間を記録するフィルタ（認証より前で計測する）
+    @Bean
+    public FilterRegistrationBean<FirstRequestTimingFilter> firstRequestTimingFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<FirstRequestTimingFilter> registration =
+                new FilterRegistrationBean<>(new FirstRequestTimingFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    // findByIdキャッシュのヒット率と件数
+    @Bean
+    public MeterBinder itemCacheMetrics(ItemCache itemCache) {
+        return registry -> {
+            FunctionCounter.builder("item.cache.requests", itemCache, cache -> cache.stats().hits())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("item.cache.requests", itemCache, cache -> cache.stats().misses())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("item.cache.evictions", itemCache, cache -> cache.stats().evictions())
+                    .register(registry);
+            Gauge.builder("item.cache.size", itemCache, cache -> cache.stats().size())
+                    .register(registry);
+        };
+    }
+
+    // findByIdのキャッシュミスの読み込み数と、まとめて実行したSQLの数
+    @Bean
+    public MeterBinder itemLoadCoalescerMetrics(ItemLoadCoalescer itemLoadCoalescer) {
+        return registry -> {
+            FunctionCounter.builder("item.find.loads", itemLoadCoalescer, coalescer -> coalescer.stats().lookups())
+                    .register(registry);
+            FunctionCounter.builder("item.find.loads.shared", itemLoadCoalescer, coalescer -> coalescer.stats().shared())
+                    .description("Lookups that joined a load already in flight for the same id")
+                    .register(registry);
+            FunctionCounter.builder("item.find.queries", itemLoadCoalescer, coalescer -> coalescer.stats().batches())
+                    .register(registry);
+        };
+    }
+
+    // 認証キャッシュのヒット率と、BCryptにかかった時間・省略できた時間
+    @Bean
+    public MeterBinder authCacheMetrics(CachingPasswordEncoder passwordEncoder) {
+        return registry -> {
+            FunctionCounter.builder("auth.cache.requests", passwordEncoder, encoder -> encoder.stats().hits())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("auth.cache.requests", passwordEncoder, encoder -> encoder.stats().misses())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("auth.bcrypt.time", passwordEncoder,
+                            encoder -> encoder.stats().verificationNanos() / 1e9)
+                    .baseUnit("seconds")
+                    .description("CPU time spent in BCrypt verification")
+                    .register(registry);
+            FunctionCounter.builder("auth.bcrypt.saved", passwordEncoder,
+                            encoder -> encoder.stats().savedNanos() / 1e9)
+                    .baseUnit("seconds")
+                    .description("Estimated BCrypt CPU time saved by the authentication cache")
+                    .register(registry);
+        };
+    }
+
+    // 流量制限（429）と過負荷（503）で断ったリクエスト数と、処理中のリクエスト数
+    @Bean
+    public MeterBinder requestAdmissionMetrics(TokenBucketRateLimiter rateLimiter, LoadShedder loadShedder) {
+        return registry -> {
+            FunctionCounter.builder("item.requests.rejected", rateLimiter, limiter -> limiter.stats().rejected())
+                    .tag("reason", "rate_limit")
+                    .register(registry);
+            FunctionCounter.builder("item.requests.rejected", loadShedder, shedder -> shedder.stats().shedInFlight())
+                    .tag("reason", "in_flight")
+                    .register(registry);
+            FunctionCounter.builder("item.requests.rejected", loadShedder, shedder -> shedder.stats().shedPoolWait())
+                    .tag("reason", "pool_wait")
+                    .register(registry);
+            Gauge.builder("item.requests.in-flight", loadShedder, shedder -> shedder.stats().inFlight())
+                    .register(registry);
+        };
+    }
+
+    // 価格更新のwrite-behindバッファの書き込み待ち件数と、1回の書き込みにかかった時間
+    @Bean
+    public MeterBinder priceUpdateBufferMetrics(PriceUpdateBuffer priceUpdateBuffer) {
+        return registry -> {
+            Gauge.builder("item.write-behind.pending", priceUpdateBuffer, buffer -> buffer.stats().pending())
+                    .description("Price updates waiting to be written to the database")
+                    .register(registry);
+            FunctionCounter.builder("item.write-behind.updates", priceUpdateBuffer, buffer -> buffer.stats().buffered())
+                    .tag("result", "buffered")
+                    .register(registry);
+            FunctionCounter.builder("item.write-behind.updates", priceUpdateBuffer, buffer -> buffer.stats().coalesced())
+                    .tag("result", "coalesced")
+                    .register(registry);
+            FunctionCounter.builder("item.write-behind.rows", priceUpdateBuffer, buffer -> buffer.stats().flushedRows())
+                    .register(registry);
+            FunctionCounter.builder("item.write-behind.failures", priceUpdateBuffer, buffer -> buffer.stats().failures())
+                    .register(registry);
+            Timer flushTimer = Timer.builder("item.write-behind.flush")
+                    .description("Time spent writing buffered price updates")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            priceUpdateBuffer.setFlushTimeRecorder(nanos -> flushTimer.record(nanos, TimeUnit.NANOSECONDS));
+        };
+    }
+
+    // 変更フィードの購読者数と、最後に追記した変更の通し番号
+    @Bean
+    public MeterBinder itemChangeFeedMetrics(ItemChangeFeed itemChangeFeed, ItemChangeStream itemChangeStream) {
+        return registry -> {
+            Gauge.builder("item.change-feed.subscribers", itemChangeStream, ItemChangeStream::subscribers)
+                    .register(registry);
+            FunctionCounter.builder("item.change-feed.changes", itemChangeFeed, ItemChangeFeed::lastSequence)
+                    .register(registry);
+        };
+    }
+
+    // カタログ索引に載っているアイテム数（無効な場合は0）
+    @Bean
+    public MeterBinder itemCatalogIndexMetrics(ItemCatalogIndex itemCatalogIndex) {
+        return registry -> Gauge.builder("item.catalog-index.size", itemCatalogIndex, ItemCatalogIndex::size)
+                .register(registry);
+    }
+
+    // 仮想スレッドモードのDB同時接続数制限で、許可を待った時間と待っているスレッド数
+    // DataSourceのBeanが複数あっても、それぞれをBean名（datasourceタグ）で区別して記録する
+    @Bean
+    public MeterBinder connectionPermitMetrics(ListableBeanFactory beanFactory) {
+        return registry -> beanFactory.getBeansOfType(DataSource.class).forEach((name, dataSource) -> {
+            ConcurrencyLimitingDataSource limiter = findLimiter(dataSource);
+            if (limiter == null) {
+                return;
+            }
+            Timer waitTimer = Timer.builder("item.db.permit.wait")
+                    .description("Time spent waiting for a database connection permit")
+                    .tag("datasource", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            limiter.setWaitTimeRecorder(nanos -> waitTimer.record(nanos, TimeUnit.NANOSECONDS));
+            Gauge.builder("item.db.permit.pending", limiter, ConcurrencyLimitingDataSource::getQueueLength)
+                    .tag("datasource", name)
+                    .register(registry);
+        });
+    }
+
+    private static ConcurrencyLimitingDataSource findLimiter(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(ConcurrencyLimitingDataSource.class)) {
+                return dataSource.unwrap(ConcurrencyLimitingDataSource.class);
+            }
+        } catch (SQLException e) {
+            // 取得できなければ計測しない
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springboot_tutorial.config;
+
+import org.springframework.core.task.TaskDecorator;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 自分の書き込みを直後に読めるようにするための判定（read-your-writes）
+ * 書き込んだクライアント（認証ユーザー）は、一定時間（window）だけ読み込みもプライマリで行う
+ * レプリカへの反映が遅れても、自分が更新した直後に古い値が返らないようにする
+ * プライマリで読むかどうかはスレッドごとに保持し、ReplicaRoutingDataSourceが参照する
+ */
+public class ReadYourWrites {
+
+    // 現在のリクエストの読み込みをプライマリで行うか
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    // 期限切れの記録を掃除する件数の目安
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    // クライアント → プライマリで読む期限（System.nanoTime）
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * クライアントが書き込んだことを記録する（この時点からwindowの間はプライマリで読む）
+     */
+    public void recordWrite(String client) {
+        long now = System.nanoTime();
+        deadlines.put(client, now + windowNanos);
+        if (deadlines.size() > PURGE_THRESHOLD) {
+            deadlines.values().removeIf(deadline -> deadline - now <= 0);
+        }
+    }
+
+    /**
+     * クライアントがwindow以内に書き込んだか
+     */
+    public boolean wroteRecently(String client) {
+        Long deadline = deadlines.get(client);
+        return deadline != null && deadline - System.nanoTime() > 0;
+    }
+
+    /**
+     * 現在のスレッドの読み込みをプライマリで行うかを設定する（リクエストの終わりにclearすること）
+     */
+    public static void setPrimaryRequired(boolean primaryRequired) {
+        PRIMARY_REQUIRED.set(primaryRequired ? Boolean.TRUE : null);
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    public static void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+
+    /**
+     * 現在のスレッドの読み込みをプライマリで行ってloaderを実行し、終わったら元の設定に戻す
+     * 共有のキャッシュに入れる値のように、他のクライアントにも返す読み込みに使う（レプリカの遅れた値を残さない）
+     */
+    public static <T> T onPrimary(Supplier<T> loader) {
+        boolean previous = isPrimaryRequired();
+        setPrimaryRequired(true);
+        try {
+            return loader.get();
+        } finally {
+            setPrimaryRequired(previous);
+        }
+    }
+
+    /**
+     * 非同期処理を登録したスレッドの設定を、実行するスレッドに引き継ぐTaskDecorator
+     */
+    public static TaskDecorator taskDecorator() {
+        return task -> {
+            boolean primaryRequired = isPrimaryRequired();
+            return () -> {
+                setPrimaryRequired(primaryRequired);
+                try {
+                    task.run();
+                } finally {
+                    clear();
+                }
+            };
+        };
+    }
+}
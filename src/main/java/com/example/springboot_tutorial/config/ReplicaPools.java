@@ -0,0 +1,20 @@
+package com.example.springboot_tutorial.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+/**
+ * プライマリと各レプリカのコネクションプール
+ * プール自体はDataSourceのBeanにせず（アプリケーションが使うのはReplicaRoutingDataSourceだけ）、停止時にまとめて閉じる
+ * @param primary 書き込み（と、書き込んだ直後の読み込み）に使うプール
+ * @param replicas 読み込みに使うプール
+ */
+public record ReplicaPools(HikariDataSource primary, List<HikariDataSource> replicas) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.springboot_tutorial.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 読み込みをレプリカに振り分ける設定
+ * item.datasource.replicas.enabled=true の時だけ有効になり、spring.datasource.urlをプライマリ、
+ * item.datasource.replicas.urlsをレプリカとして、それぞれコネクションプールを作る
+ * （ユーザー名・パスワード・プールの大きさはspring.datasourceの設定を共通で使う）
+ */
+@Configuration
+@ConditionalOnProperty(name = "item.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public ReplicaPools replicaPools(DataSourceProperties properties,
+                                     @Value("${item.datasource.replicas.urls}") List<String> replicaUrls,
+                                     @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+        HikariDataSource primary = createPool(properties, properties.determineUrl(), "primary", maximumPoolSize);
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(createPool(properties, replicaUrls.get(i), "replica-" + (i + 1), maximumPoolSize));
+        }
+        return new ReplicaPools(primary, replicas);
+    }
+
+    // JPA・JdbcTemplate・スキーマの初期化は全てこのDataSourceを使う（書き込みは常にプライマリ）
+    @Bean
+    public ReplicaRoutingDataSource dataSource(ReplicaPools replicaPools) {
+        return new ReplicaRoutingDataSource(replicaPools.primary(), replicaPools.replicas());
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(
+            @Value("${item.datasource.replicas.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWrites(window);
+    }
+
+    // /async/items・ストリーミング応答の処理スレッドにも、リクエストの読み込み先を引き継ぐ
+    @Bean
+    public TaskDecorator readYourWritesTaskDecorator() {
+        return ReadYourWrites.taskDecorator();
+    }
+
+    // 読み込み専用のコネクションの取得先ごとの回数
+    // 仮想スレッドモードではConcurrencyLimitingDataSourceで包まれるため、DataSourceとして受け取って取り出す
+    @Bean
+    public MeterBinder replicaRoutingMetrics(DataSource routingDataSource) {
+        return registry -> {
+            ReplicaRoutingDataSource dataSource;
+            try {
+                dataSource = routingDataSource.unwrap(ReplicaRoutingDataSource.class);
+            } catch (SQLException e) {
+                return;  // 取得できなければ計測しない
+            }
+            FunctionCounter.builder("item.datasource.reads", dataSource, ds -> ds.stats().replicaReads())
+                    .tag("target", "replica")
+                    .register(registry);
+            FunctionCounter.builder("item.datasource.reads", dataSource, ds -> ds.stats().primaryReads())
+                    .tag("target", "primary")
+                    .register(registry);
+        };
+    }
+
+    // シャードのプール（ShardingConfig）も同じ設定で作る
+    static HikariDataSource createPool(DataSourceProperties properties, String url, String name,
+                                       int maximumPoolSize) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(maximumPoolSize);
+        return pool;
+    }
+}
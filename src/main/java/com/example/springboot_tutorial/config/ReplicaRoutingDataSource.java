@@ -0,0 +1,68 @@
+package com.example.springboot_tutorial.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 読み込み専用トランザクションをレプリカへ、それ以外をプライマリへ振り分けるDataSource
+ * トランザクション開始時にはコネクションを取得せず、最初のSQLの時点でsetReadOnly(true)されていればレプリカを使う
+ * （@Transactional(readOnly = true)のメソッドと、ItemRepositoryの読み込みメソッドが対象）
+ * レプリカは順番に使い、ReadYourWritesでプライマリが指定されている間はプライマリを使う
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private final DataSource primary;
+    private final List<? extends DataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas) {
+        super(primary);
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        setReadOnlyDataSource(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return readTarget().getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return readTarget().getConnection(username, password);
+            }
+        });
+    }
+
+    // 読み込み専用のコネクションの取得先
+    private DataSource readTarget() {
+        if (ReadYourWrites.isPrimaryRequired()) {
+            primaryReads.incrementAndGet();
+            return primary;
+        }
+        replicaReads.incrementAndGet();
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * 読み込み専用のコネクションの取得先ごとの回数
+     * @param replicaReads レプリカから取得した回数
+     * @param primaryReads 直前に書き込んだクライアントのため、プライマリから取得した回数
+     */
+    public record Stats(long replicaReads, long primaryReads) {
+    }
+
+    public Stats stats() {
+        return new Stats(replicaReads.get(), primaryReads.get());
+    }
+}
@@ -1,5 +1,12 @@
 package com.example.springboot_tutorial.config;
 
+import com.example.springboot_tutorial.security.CachingPasswordEncoder;
+import com.example.springboot_tutorial.security.LoadShedder;
+import com.example.springboot_tutorial.security.ReadYourWritesFilter;
+import com.example.springboot_tutorial.security.RequestAdmissionFilter;
+import com.example.springboot_tutorial.security.TokenBucketRateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -13,6 +20,10 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
 
 @Configuration  // @Beanとセットで用いる
 @EnableWebSecurity
@@ -20,7 +31,9 @@ public class SecurityConfig {
 
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenBucketRateLimiter rateLimiter,
+                                                   LoadShedder loadShedder,
+                                                   ObjectProvider<ReadYourWrites> readYourWrites) throws Exception {
         http
                 // URLごとのアクセス制御ルール
                 .authorizeHttpRequests(authz -> authz
@@ -36,22 +49,50 @@ public class SecurityConfig {
                         .frameOptions(HeadersConfigurer.FrameOptionsConfig::disable)
                 )
                 // HTTPBasic認証を有効にする
-                .httpBasic(Customizer.withDefaults());
+                .httpBasic(Customizer.withDefaults())
+                // 認証の直後に、過負荷時の503とユーザーごとの流量制限（429）を判定する
+                .addFilterAfter(new RequestAdmissionFilter(rateLimiter, loadShedder), BasicAuthenticationFilter.class);
+        // レプリカを使う場合は、ユーザーごとに読み込み先（プライマリ・レプリカ）を決める
+        readYourWrites.ifAvailable(tracker ->
+                http.addFilterAfter(new ReadYourWritesFilter(tracker), RequestAdmissionFilter.class));
         return http.build();
     }
 
+    // ユーザーごとの流量制限（トークンバケット）
+    @Bean
+    public TokenBucketRateLimiter rateLimiter(
+            @Value("${item.rate-limit.requests-per-second:100}") double requestsPerSecond,
+            @Value("${item.rate-limit.burst:200}") int burst) {
+        return new TokenBucketRateLimiter(requestsPerSecond, burst);
+    }
+
+    // 過負荷時に新しいリクエストを断る判定
+    @Bean
+    public LoadShedder loadShedder(
+            @Value("${item.load-shedding.max-in-flight:200}") int maxInFlight,
+            @Value("${item.load-shedding.max-pool-waiters:50}") int maxPoolWaiters,
+            ObjectProvider<DataSource> dataSources,
+            ObjectProvider<ReplicaPools> replicaPools,
+            ObjectProvider<ItemShards> itemShards) {
+        return new LoadShedder(maxInFlight, maxPoolWaiters,
+                new ConnectionPoolWaiters(dataSources, replicaPools, itemShards));
+    }
+
     // パスワード暗号化方式を定義
+    // BCryptの照合は1回数十msかかるため、成功した認証情報は一定時間キャッシュする
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public CachingPasswordEncoder passwordEncoder(
+            @Value("${item.auth-cache.max-size:1000}") int maxSize,
+            @Value("${item.auth-cache.ttl:5m}") Duration ttl) {
+        return new CachingPasswordEncoder(new BCryptPasswordEncoder(), maxSize, ttl);
     }
 
     // テスト用ユーザーの定義
     @Bean
-    public UserDetailsService userDetailsService() {
+    public UserDetailsService userDetailsService(PasswordEncoder passwordEncoder) {
         UserDetails user = User.builder()
                 .username("user")
-                .password(passwordEncoder().encode("password"))
+                .password(passwordEncoder.encode("password"))
                 .roles("USER")
                 .build();
 
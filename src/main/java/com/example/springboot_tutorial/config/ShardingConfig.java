@@ -0,0 +1,42 @@
+package com.example.springboot_tutorial.config;
+
+import com.example.springboot_tutorial.service.ShardedIdGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * アイテムを複数のデータベース（シャード）に分けて保存する設定
+ * item.sharding.enabled=true の時だけ有効になり、item.sharding.urlsのそれぞれにコネクションプールを作る
+ * （ユーザー名・パスワードはspring.datasourceの設定を共通で使う）
+ * アイテムの読み書き（ItemService）はShardedItemServiceがシャードに振り分ける
+ * 起動時の投入（ItemSeeder）もシャードに振り分ける。一括処理・インポート・エクスポート・集計のAPIはシャードに対応していないため501を返す
+ * バケット → シャードの対応（ItemShards）とバケットのロックはアプリケーションの中だけで持つため、
+ * シャードを使う場合はアプリケーションを1台だけで動かす（複数台では、移動したバケットに他の台が古い対応で書き込んでしまう）
+ */
+@Configuration
+@ConditionalOnProperty(name = "item.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ItemShards itemShards(DataSourceProperties properties,
+                                 @Value("${item.sharding.urls}") List<String> shardUrls,
+                                 @Value("${item.sharding.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize) {
+        List<HikariDataSource> pools = new ArrayList<>(shardUrls.size());
+        for (int i = 0; i < shardUrls.size(); i++) {
+            pools.add(ReplicaRoutingConfig.createPool(properties, shardUrls.get(i), "shard-" + i, poolSize));
+        }
+        return new ItemShards(pools);
+    }
+
+    @Bean
+    public ShardedIdGenerator shardedIdGenerator() {
+        return new ShardedIdGenerator();
+    }
+}
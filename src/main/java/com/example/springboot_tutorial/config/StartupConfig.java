@@ -0,0 +1,22 @@
+package com.example.springboot_tutorial.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 遅延初期化（spring.main.lazy-initialization=true）の対象外にするBean
+ * JPAの起動とスキーマの検証は起動時に済ませ、スキーマの不一致は起動時に失敗させる
+ * （遅延させると最初のリクエストがHibernateの起動を待つことになる）
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerPersistence() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class, DataSource.class);
+    }
+}
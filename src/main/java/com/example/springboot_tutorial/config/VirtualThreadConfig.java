@@ -0,0 +1,37 @@
+package com.example.springboot_tutorial.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * 仮想スレッドモードの設定
+ * spring.threads.virtual.enabled=true の時だけ有効になる。
+ * TomcatのリクエストとSpringのタスク実行はSpring Bootが仮想スレッドに切り替えるので、
+ * ここではDBコネクションの同時取得数を制限するDataSourceを差し込む
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    // BeanPostProcessorは他のBeanより先に作られるため、staticで定義する
+    @Bean
+    public static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(
+            @Value("${item.db.concurrency-limit:10}") int limit,
+            @Value("${item.db.acquire-timeout:30s}") Duration acquireTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitingDataSource)) {
+                    return new ConcurrencyLimitingDataSource(dataSource, limit, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.springboot_tutorial.controller;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.service.ItemAsyncService;
+import com.example.springboot_tutorial.service.ItemService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * アイテムAPIの非同期版
+ * 処理はタスク実行用のスレッドプールで行い、Tomcatのスレッドはすぐに次のリクエストを受け付ける
+ * 失敗時のステータスコード（404・412など）は同期版の /items と同じ
+ */
+@RestController
+@RequestMapping("/async/items")
+public class AsyncItemController {
+
+    @Autowired
+    private ItemAsyncService itemAsyncService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * アイテム一覧を取得するAPI
+     * GET /async/items
+     */
+    @Operation(summary = "アイテム一覧を非同期で取得する")
+    @GetMapping
+    public CompletableFuture<List<Item>> getItems() {
+        return itemAsyncService.findAll();
+    }
+
+    /**
+     * アイテム一覧をID順にページ単位で取得するAPI
+     * GET /async/items/page?after={前ページの最後のID}&size={件数}
+     */
+    @Operation(summary = "アイテム一覧をページ単位で非同期に取得する")
+    @GetMapping("/page")
+    public CompletableFuture<ItemPage> getItemPage(
+            @Parameter(description = "前ページの最後のアイテムID（省略時は先頭から）") @RequestParam(required = false) Long after,
+            @Parameter(description = "1ページの件数（最大1000）") @RequestParam(defaultValue = "100") int size) {
+        return itemAsyncService.findPage(after, size);
+    }
+
+    /**
+     * 全アイテムをNDJSON（1行1アイテム）で逐次返すAPI
+     * ページ単位で読み込んで書き出し、送信し終えてから次のページを読み込む
+     * DBコネクションは1ページの読み込み中しか使わないため、読むのが遅いクライアントがいてもコネクションを占有しない
+     * （ページごとに別々に読み込むため、途中で追加・更新されたアイテムが含まれることがある）
+     * GET /async/items/stream?pageSize={1回に読み込む件数}
+     */
+    @Operation(summary = "アイテム一覧をNDJSON形式でページ単位にストリーミング取得する")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamItems(
+            @Parameter(description = "1回に読み込む件数（最大1000）") @RequestParam(defaultValue = "500") int pageSize) {
+        ObjectWriter writer = objectMapper.writerFor(Item.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                Long after = null;
+                do {
+                    ItemPage page = itemService.findPage(after, pageSize);
+                    for (Item item : page.items()) {
+                        writer.writeValue(generator, item);
+                        generator.writeRaw('\n');
+                    }
+                    // クライアントが受け取るまでflushが待つため、次のページの読み込みもその分遅れる
+                    generator.flush();
+                    after = page.nextCursor();
+                } while (after != null);
+            }
+        };
+    }
+
+    /**
+     * IDを指定してアイテムを1件取得するAPI
+     * GET /async/items/{id}
+     */
+    @Operation(summary = "特定のアイテムを1件非同期で取得する")
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Item>> getItemById(
+            @Parameter(description = "取得対象アイテムのID") @PathVariable Long id) {
+        return itemAsyncService.findById(id).thenApply(ItemController::withETag);
+    }
+
+    /**
+     * 新しいアイテムを1件登録するAPI
+     * POST /async/items
+     */
+    @Operation(summary = "新しいアイテムを非同期で登録する")
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<Item> createItem(@RequestBody Item item) {
+        return itemAsyncService.createItem(item);
+    }
+
+    /**
+     * IDを指定してアイテムを1件更新するAPI
+     * If-Matchの扱いは PUT /items/{id} と同じ
+     * PUT /async/items/{id}
+     */
+    @Operation(summary = "既存のアイテムを非同期で更新する")
+    @PutMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Item>> updateItem(
+            @Parameter(description = "更新対象アイテムのID") @PathVariable Long id,
+            @Parameter(description = "取得時のETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Item item) {
+        return itemAsyncService.updateItem(id, item, ItemController.parseVersion(ifMatch))
+                .thenApply(ItemController::withETag);
+    }
+
+    /**
+     * IDを指定してアイテムを1件削除するAPI
+     * DELETE /async/items/{id}
+     */
+    @Operation(summary = "既存のアイテムを非同期で削除する")
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public CompletableFuture<Void> deleteItem(
+            @Parameter(description = "削除対象アイテムのID") @PathVariable Long id) {
+        return itemAsyncService.deleteItem(id);
+    }
+
+    // スレッドプールの待ち行列が一杯の場合は、処理せずに503を返す
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleRejected() {
+    }
+}
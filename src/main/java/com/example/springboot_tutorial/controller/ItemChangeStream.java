@@ -0,0 +1,120 @@
+package com.example.springboot_tutorial.controller;
+
+import com.example.springboot_tutorial.model.ItemChange;
+import com.example.springboot_tutorial.service.ItemChangeFeed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 変更フィードをServer-Sent Eventsで購読者に送る
+ * 購読者ごとに仮想スレッドを1つ割り当て、ItemChangeFeedから自分の続きを読んで送信する
+ * 遅い購読者は自分のスレッドで待つだけなので、更新処理や他の購読者を止めない
+ * 追いつけずにリングバッファから消えた変更は、RESETを送って一覧の取得し直しを求める
+ */
+@Slf4j
+@Component
+public class ItemChangeStream implements DisposableBean {
+
+    // 1回の読み込みで送る最大件数
+    private static final int BATCH_SIZE = 256;
+
+    private final ItemChangeFeed itemChangeFeed;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    private final Duration heartbeatInterval;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("item-change-feed-", 0).factory());
+
+    public ItemChangeStream(ItemChangeFeed itemChangeFeed,
+                            @Value("${item.change-feed.max-subscribers:1000}") int maxSubscribers,
+                            @Value("${item.change-feed.timeout:30m}") Duration timeout,
+                            @Value("${item.change-feed.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.itemChangeFeed = itemChangeFeed;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * 購読を始める
+     * @param after 最後に受け取った変更の通し番号。nullの場合は今後の変更だけを送る
+     * @return 変更を送るSSEの接続（timeoutで閉じるので、クライアントはLast-Event-IDを付けて再接続する）
+     * @throws ResponseStatusException 購読者数が上限に達している場合（503）
+     */
+    public SseEmitter subscribe(Long after) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many change feed subscribers.");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+        long start = after == null ? itemChangeFeed.lastSequence() : after;
+        try {
+            senders.execute(() -> send(emitter, open, start));
+        } catch (RuntimeException e) {
+            subscribers.decrementAndGet();
+            throw e;
+        }
+        return emitter;
+    }
+
+    // 接続が閉じるまで、続きの変更を読んでは送る。変更がない間は一定間隔でコメントを送り、切断を検出する
+    private void send(SseEmitter emitter, AtomicBoolean open, long after) {
+        long cursor = after;
+        try {
+            while (open.get()) {
+                List<ItemChange> changes = itemChangeFeed.readAfter(cursor, BATCH_SIZE);
+                for (ItemChange change : changes) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(change.sequence()))
+                            .name(change.type().name())
+                            .data(change, MediaType.APPLICATION_JSON));
+                    cursor = change.sequence();
+                }
+                if (changes.isEmpty() && !itemChangeFeed.awaitAfter(cursor, heartbeatInterval)) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // クライアントが切断した、または接続がタイムアウトで閉じられた
+            log.debug("Change feed subscriber disconnected at sequence {}.", cursor);
+        } catch (InterruptedException e) {
+            // アプリケーションの停止
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } finally {
+            subscribers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 購読中の接続数
+     */
+    public int subscribers() {
+        return subscribers.get();
+    }
+
+    // 待機中の送信スレッドを起こして終了させる
+    @Override
+    public void destroy() {
+        senders.shutdownNow();
+    }
+}
@@ -1,42 +1,258 @@
 package com.example.springboot_tutorial.controller;
 
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.exception.InvalidRequestException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
 import com.example.springboot_tutorial.model.Item;  // Itemクラス
+import com.example.springboot_tutorial.model.ItemBatchResult;
+import com.example.springboot_tutorial.model.ItemImportResult;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemStats;
+import com.example.springboot_tutorial.model.ItemSummary;
+import com.example.springboot_tutorial.model.PriceUpdate;
+import com.example.springboot_tutorial.service.CatalogVersion;
+import com.example.springboot_tutorial.service.ItemBatchService;
+import com.example.springboot_tutorial.service.ItemStatistics;
 import com.example.springboot_tutorial.service.ItemService;  // ItemService(newしてる)
+import com.example.springboot_tutorial.service.ItemServiceImpl;
+import com.example.springboot_tutorial.service.ItemTransferService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/items")
 public class ItemController {
 
+    private static final String GZIP_VALUE = "application/gzip";
+
     @Autowired
     private ItemService itemService;
 
+    @Autowired
+    private ItemBatchService itemBatchService;
+
+    @Autowired
+    private ItemTransferService itemTransferService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private ItemStatistics itemStatistics;
+
+    @Autowired
+    private ItemChangeStream itemChangeStream;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // trueの場合は、一括処理・インポート・エクスポート・集計を受け付けない（requireUnsharded）
+    @Value("${item.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    // trueの場合は、ETagを付けて返す一覧をプライマリから読む（readForETag）
+    @Value("${item.datasource.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
     /**
      * アイテム一覧を取得するAPI
+     * 前回取得時から変更がなければ、一覧を読み込まずに304 Not Modifiedを返す
+     * ETagはプライマリへの書き込みで進むため、レプリカを使う場合も一覧はプライマリから読む
+     * Acceptヘッダで application/x-jackson-smile・application/cbor を指定するとバイナリ形式で返す（JacksonConfig）
      * GET /items
      */
     @Operation(summary = "アイテム一覧を取得する")
     @GetMapping
-    public List<Item> getItems() {
+    public List<Item> getItems(WebRequest request) {
+        // If-None-Match/If-Modified-Sinceが一致すれば304（ETagとLast-Modifiedはここで設定される）
+        if (request.checkNotModified(catalogVersion.eTag(), catalogVersion.lastModified())) {
+            return null;
+        }
         // Serviceを呼び出して全アイテムを取得
-        return itemService.findAll();
+        return readForETag(itemService::findAll);
+    }
+
+    /**
+     * IDを複数指定してアイテムをまとめて取得するAPI（GET /items/{id}を並列に呼ぶ代わりに使う）
+     * キャッシュにないIDは1回のSQLで読み込む。存在しないIDは結果に含まれない
+     * GET /items?ids=1,2,3
+     */
+    @Operation(summary = "IDを複数指定してアイテムを取得する")
+    @GetMapping(params = "ids")
+    public List<Item> getItemsByIds(
+            @Parameter(description = "取得対象アイテムのID（カンマ区切り、最大1000件）") @RequestParam List<Long> ids) {
+        if (ids.size() > ItemServiceImpl.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids. Maximum is " + ItemServiceImpl.MAX_PAGE_SIZE);
+        }
+        return itemService.findByIds(ids);
+    }
+
+    /**
+     * アイテム一覧をID順にページ単位で取得するAPI
+     * GET /items/page?after={前ページの最後のID}&size={件数}
+     */
+    @Operation(summary = "アイテム一覧をページ単位で取得する")
+    @GetMapping("/page")
+    public ItemPage getItemPage(
+            @Parameter(description = "前ページの最後のアイテムID（省略時は先頭から）") @RequestParam(required = false) Long after,
+            @Parameter(description = "1ページの件数（最大1000）") @RequestParam(defaultValue = "100") int size,
+            WebRequest request) {
+        if (request.checkNotModified(catalogVersion.eTag())) {
+            return null;
+        }
+        return readForETag(() -> itemService.findPage(after, size));
+    }
+
+    /**
+     * 名前・価格帯でアイテムを検索するAPI
+     * GET /items/search?name={名前}&match=PREFIX&minPrice={下限}&maxPrice={上限}&sort=PRICE&order=DESC&limit={件数}
+     */
+    @Operation(summary = "アイテムを名前・価格帯で検索する")
+    @GetMapping("/search")
+    public List<ItemSummary> searchItems(
+            @Parameter(description = "アイテム名") @RequestParam(required = false) String name,
+            @Parameter(description = "名前の一致方法（PREFIX: 前方一致 / CONTAINS: 部分一致）")
+            @RequestParam(defaultValue = "PREFIX") ItemSearchQuery.NameMatch match,
+            @Parameter(description = "価格の下限（以上）") @RequestParam(required = false) Integer minPrice,
+            @Parameter(description = "価格の上限（以下）") @RequestParam(required = false) Integer maxPrice,
+            @Parameter(description = "並び替えに使う列（ID / NAME / PRICE）")
+            @RequestParam(defaultValue = "ID") ItemSearchQuery.SortKey sort,
+            @Parameter(description = "並び順（ASC / DESC、大文字・小文字は区別しない）")
+            @RequestParam(defaultValue = "ASC") String order,
+            @Parameter(description = "最大件数（最大1000）") @RequestParam(defaultValue = "100") int limit) {
+        ItemSearchQuery query = new ItemSearchQuery(
+                name, match, minPrice, maxPrice, sort, parseSortOrder(order) == ItemSearchQuery.SortOrder.DESC, limit);
+        return itemService.search(query);
+    }
+
+    /**
+     * アイテムの価格の集計（件数・合計・最小・最大・平均・価格帯ごとの件数）を取得するAPI
+     * 集計は変更のたびに差分で更新されているため、テーブルを走査しない
+     * GET /items/stats
+     */
+    @Operation(summary = "アイテムの価格の集計を取得する")
+    @GetMapping("/stats")
+    public ItemStats getItemStats(WebRequest request) {
+        requireUnsharded();
+        if (request.checkNotModified(catalogVersion.eTag())) {
+            return null;
+        }
+        return itemStatistics.stats();
+    }
+
+    /**
+     * アイテムの登録・更新・削除をServer-Sent Eventsで逐次受け取るAPI（変更フィード）
+     * 各イベントのidは変更の通し番号で、再接続時にLast-Event-ID（またはafter）で渡すとその続きから送る
+     * RESETを受け取った場合は、一覧を取得し直してからその続きを受け取る
+     * GET /items/changes?after={通し番号}
+     */
+    @Operation(summary = "アイテムの変更をServer-Sent Eventsで購読する")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @Parameter(description = "最後に受け取った変更の通し番号（省略時は購読開始後の変更のみ）")
+            @RequestParam(required = false) Long after,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // EventSourceの自動再接続で付くLast-Event-IDを優先する
+        return itemChangeStream.subscribe(lastEventId != null ? lastEventId : after);
+    }
+
+    /**
+     * 全アイテムをNDJSON（1行1アイテム）で逐次返すAPI
+     * DBから読み込んだ順にレスポンスへ書き出すため、一覧全体をメモリに載せない
+     * GET /items/stream
+     */
+    @Operation(summary = "アイテム一覧をNDJSON形式でストリーミング取得する")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamItems() {
+        // 1件ごとのflushを止め、出力バッファ単位でまとめて送信する
+        ObjectWriter writer = objectMapper.writerFor(Item.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                itemService.streamAll(item -> {
+                    try {
+                        writer.writeValue(generator, item);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 全アイテムをgzip圧縮したNDJSONファイルとして書き出すAPI（環境間のスナップショット用）
+     * GET /items/export
+     */
+    @Operation(summary = "全アイテムをgzip圧縮したNDJSON形式で書き出す")
+    @GetMapping(value = "/export", produces = GZIP_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportItems() {
+        requireUnsharded();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(GZIP_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("items.ndjson.gz").build().toString())
+                .body(out -> itemTransferService.exportTo(out));
+    }
+
+    /**
+     * GET /items/export で書き出したファイルを取り込むAPI（同じIDのアイテムは上書き）
+     * gzip圧縮していないNDJSONも受け付ける
+     * POST /items/import
+     */
+    @Operation(summary = "NDJSON（gzip圧縮可）のアイテムを一括で取り込む")
+    @PostMapping(value = "/import", consumes = {GZIP_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ItemImportResult importItems(InputStream body) throws IOException {
+        requireUnsharded();
+        try {
+            return new ItemImportResult(itemTransferService.importFrom(body));
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed NDJSON line.", e);
+        }
     }
 
     /**
      * IDを指定してアイテムを1件取得するAPI
+     * バージョンをETagとして返し、If-None-Matchが一致すれば本文を返さずに304 Not Modifiedを返す
      * GET /items/{id}
      */
     @Operation(summary = "特定のアイテムを1件取得する")
     @GetMapping("/{id}")
-    public Item getItemById(
+    public ResponseEntity<Item> getItemById(
             @Parameter(description = "取得対象アイテムのID") @PathVariable Long id) { // @PathVariableでURLの{id}を受け取る
-        return itemService.findById(id);
+        return withETag(itemService.findById(id));
     }
 
     /**
@@ -53,12 +269,33 @@ public class ItemController {
 
     /**
      * IDを指定してアイテムを1件更新するAPI
+     * If-MatchにETag（取得時のバージョン）を指定すると、他の更新と競合した場合は412 Precondition Failedを返す
      * PUT /items/{id}
      */
     @Operation(summary = "既存のアイテムを更新する") // OpenAPI
     @PutMapping("/{id}")  // PUTリクエストの処理を行う
-    public Item updateItem(@RequestBody Item item) {
-        return itemService.updateItem(item.getId(), item);
+    public ResponseEntity<Item> updateItem(
+            @Parameter(description = "更新対象アイテムのID") @PathVariable Long id,
+            @Parameter(description = "取得時のETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Item item) {
+        Long expectedVersion = parseVersion(ifMatch);
+        Item updatedItem = expectedVersion == null
+                ? itemService.updateItem(id, item)
+                : itemService.updateItem(id, item, expectedVersion);
+        return withETag(updatedItem);
+    }
+
+    /**
+     * IDを指定してアイテムの価格だけを更新するAPI
+     * write-behindが有効な場合、DBへの書き込みは後からまとめて行われる（取得APIはすぐに新しい価格を返す）
+     * PATCH /items/{id}/price
+     */
+    @Operation(summary = "アイテムの価格を更新する")
+    @PatchMapping("/{id}/price")
+    public ResponseEntity<Item> updatePrice(
+            @Parameter(description = "更新対象アイテムのID") @PathVariable Long id,
+            @RequestBody PriceUpdate priceUpdate) {
+        return withETag(itemService.updatePrice(id, priceUpdate.price()));
     }
 
     /**
@@ -72,4 +309,135 @@ public class ItemController {
             @Parameter(description = "削除対象アイテムのID") @PathVariable Long id) {
         itemService.deleteItem(id);
     }
+
+    /**
+     * アイテムを一括登録するAPI（JSON配列）
+     * POST /items/batch
+     */
+    @Operation(summary = "アイテムを一括登録する")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ItemBatchResult> createItems(@RequestBody List<Item> items) {
+        requireUnsharded();
+        return itemBatchService.createItems(items.iterator());
+    }
+
+    /**
+     * アイテムを一括登録するAPI（NDJSON）
+     * 1行ずつ読みながらチャンク単位で登録するため、リクエスト全体をメモリに載せない
+     * POST /items/batch
+     */
+    @Operation(summary = "アイテムをNDJSON形式で一括登録する")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<ItemBatchResult> createItemsFromNdjson(InputStream body) throws IOException {
+        requireUnsharded();
+        return readNdjson(body, Item.class, itemBatchService::createItems);
+    }
+
+    /**
+     * アイテムを一括更新するAPI（JSON配列）
+     * PUT /items/batch
+     */
+    @Operation(summary = "アイテムを一括更新する")
+    @PutMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ItemBatchResult> updateItems(@RequestBody List<Item> items) {
+        requireUnsharded();
+        return itemBatchService.updateItems(items.iterator());
+    }
+
+    /**
+     * アイテムを一括更新するAPI（NDJSON）
+     * PUT /items/batch
+     */
+    @Operation(summary = "アイテムをNDJSON形式で一括更新する")
+    @PutMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<ItemBatchResult> updateItemsFromNdjson(InputStream body) throws IOException {
+        requireUnsharded();
+        return readNdjson(body, Item.class, itemBatchService::updateItems);
+    }
+
+    /**
+     * IDを指定してアイテムを一括削除するAPI（JSON配列）
+     * DELETE /items/batch
+     */
+    @Operation(summary = "アイテムを一括削除する")
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ItemBatchResult> deleteItems(@RequestBody List<Long> ids) {
+        requireUnsharded();
+        return itemBatchService.deleteItems(ids.iterator());
+    }
+
+    /**
+     * IDを指定してアイテムを一括削除するAPI（NDJSON、1行に1つのID）
+     * DELETE /items/batch
+     */
+    @Operation(summary = "アイテムをNDJSON形式で一括削除する")
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<ItemBatchResult> deleteItemsFromNdjson(InputStream body) throws IOException {
+        requireUnsharded();
+        return readNdjson(body, Long.class, itemBatchService::deleteItems);
+    }
+
+    // 並び順の指定を大文字・小文字を区別せずに読む。ASC・DESC以外は400
+    static ItemSearchQuery.SortOrder parseSortOrder(String order) {
+        try {
+            return ItemSearchQuery.SortOrder.valueOf(order.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("order must be ASC or DESC: " + order);
+        }
+    }
+
+    // ETag（CatalogVersion）を付けて返す一覧を読み込む
+    // レプリカの遅れた一覧が新しいETagでキャッシュされると、次の書き込みまで304で返り続けるため、プライマリから読む
+    private <T> T readForETag(Supplier<T> reader) {
+        return replicasEnabled ? ReadYourWrites.onPrimary(reader) : reader.get();
+    }
+
+    // バージョンをETagとしてレスポンスヘッダに付ける
+    // If-Matchは強い比較で照合するため、強いETagのままにする（1件のレスポンスは圧縮の下限より小さい）
+    static ResponseEntity<Item> withETag(Item item) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (item.getVersion() != null) {
+            builder.eTag(item.getVersion().toString());
+        }
+        return builder.body(item);
+    }
+
+    // If-MatchのETagからバージョンを取り出す。指定なし・「*」の場合はnull
+    static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            // このサーバーが発行していないETagは、どのバージョンとも一致しない
+            throw new VersionConflictException("ETag does not match any version: " + ifMatch);
+        }
+    }
+
+    // シャードを使う場合は501を返す（spring.datasourceのデータベースだけを読み書きし、シャードのアイテムと食い違うため）
+    private void requireUnsharded() {
+        if (shardingEnabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "Not available while item sharding is enabled.");
+        }
+    }
+
+    // NDJSONを1件ずつ読み込むIteratorを処理に渡す
+    // 途中で不正な行があった場合は400を返す（それまでのチャンクは登録済み）
+    private <T> List<ItemBatchResult> readNdjson(InputStream body, Class<T> type,
+                                                 Function<Iterator<T>, List<ItemBatchResult>> action) throws IOException {
+        try (MappingIterator<T> values = objectMapper.readerFor(type).readValues(body)) {
+            return action.apply(values);
+        } catch (RuntimeException e) {
+            // MappingIteratorは読み込みエラーを非検査例外に包んで投げる
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed NDJSON line.", e);
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package com.example.springboot_tutorial.controller;
+
+import com.example.springboot_tutorial.model.ShardRebalance;
+import com.example.springboot_tutorial.model.ShardStatus;
+import com.example.springboot_tutorial.service.ShardRebalancer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * シャードの状態の確認と、バケットの移動（item.sharding.enabled=true の時だけ有効）
+ */
+@RestController
+@RequestMapping("/shards")
+@ConditionalOnProperty(name = "item.sharding.enabled", havingValue = "true")
+public class ShardController {
+
+    private final ShardRebalancer shardRebalancer;
+
+    public ShardController(ShardRebalancer shardRebalancer) {
+        this.shardRebalancer = shardRebalancer;
+    }
+
+    /**
+     * シャードごとのバケット数とアイテム数を取得するAPI
+     * GET /shards
+     */
+    @Operation(summary = "シャードごとのバケット数とアイテム数を取得する")
+    @GetMapping
+    public List<ShardStatus> getShards() {
+        return shardRebalancer.status();
+    }
+
+    /**
+     * バケットが全シャードで均等になるように移動するAPI（シャードを追加した後に呼ぶ）
+     * POST /shards/rebalance?dryRun=true で、移動せずに予定だけを返す
+     */
+    @Operation(summary = "バケットをシャード間で均等にする")
+    @PostMapping("/rebalance")
+    public ShardRebalance rebalance(
+            @Parameter(description = "trueの場合は移動せず、予定だけを返す") @RequestParam(defaultValue = "false") boolean dryRun) {
+        return shardRebalancer.rebalance(dryRun);
+    }
+}
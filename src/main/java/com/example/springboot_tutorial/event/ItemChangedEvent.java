@@ -0,0 +1,31 @@
+package com.example.springboot_tutorial.event;
+
+import com.example.springboot_tutorial.model.Item;
+
+/**
+ * アイテムの登録・更新・削除がコミットされたことを通知するイベント
+ * @param type 変更の種類
+ * @param id 対象アイテムのID
+ * @param before 変更前のアイテム（登録時、または変更前の値が分からない場合はnull）
+ * @param after 変更後のアイテム（削除時はnull）
+ */
+public record ItemChangedEvent(Type type, Long id, Item before, Item after) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static ItemChangedEvent created(Item after) {
+        return new ItemChangedEvent(Type.CREATED, after.getId(), null, after);
+    }
+
+    public static ItemChangedEvent updated(Item before, Item after) {
+        return new ItemChangedEvent(Type.UPDATED, after.getId(), before, after);
+    }
+
+    public static ItemChangedEvent deleted(Long id, Item before) {
+        return new ItemChangedEvent(Type.DELETED, id, before, null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.springboot_tutorial.event;
+
+/**
+ * アイテムの一括取り込みがコミットされたことを通知するイベント
+ * 取り込んだ行ごとのItemChangedEventは送らないため、アイテムから集計した値などは作り直す必要がある
+ * @param count 取り込んだ件数（途中で失敗した場合は、それまでにコミットされた件数）
+ */
+public record ItemsImportedEvent(long count) {
+}
@@ -0,0 +1,12 @@
+package com.example.springboot_tutorial.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// リクエストの条件が正しくない場合（400）。呼び出し側の誤りなので、IllegalArgumentExceptionとしても扱える
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRequestException extends IllegalArgumentException{
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.springboot_tutorial.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JVMの起動から最初のリクエストに応答し終えるまでの時間を記録するフィルタ
+ * 起動時間（application.ready.time）に、遅延初期化で最初のリクエストに回った分を加えた時間になる
+ */
+@Slf4j
+public class FirstRequestTimingFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean recorded = new AtomicBoolean();
+
+    public FirstRequestTimingFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!recorded.get() && recorded.compareAndSet(false, true)) {
+                long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+                TimeGauge.builder("application.first-request.time", () -> uptimeMillis, TimeUnit.MILLISECONDS)
+                        .description("Time from JVM start until the first HTTP request was answered")
+                        .register(meterRegistry);
+                log.info("First request {} {} answered {} ms after JVM start",
+                        request.getMethod(), request.getRequestURI(), uptimeMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.springboot_tutorial.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernateが発行するSQL文をスレッドごとに数えるStatementInspector
+ * リクエストの開始時にreset()し、終了時にcurrent()を読むことで、1リクエストあたりの文の数が分かる
+ * 数えるのはリクエストを処理したスレッド（仮想スレッドモードではリクエストごとの仮想スレッド）で発行した文だけで、
+ * 非同期処理（ItemAsyncServiceのCompletableFuture）やシャードへの並列読み込み（ShardedItemService）など、
+ * 他のスレッドに渡して発行した文は含まない（そのスレッドのカウントは次にreset()されるまで使われない）
+ */
+public class JdbcStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;  // SQLは書き換えない
+    }
+
+    /**
+     * 現在のスレッドのカウントを0に戻す
+     */
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    /**
+     * 現在のスレッドで最後にreset()してから発行された文の数
+     */
+    public static int current() {
+        return COUNT.get()[0];
+    }
+}
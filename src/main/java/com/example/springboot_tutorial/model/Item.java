@@ -4,21 +4,34 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data // ＠@Getter, @Setter, @ToStringなどをまとめて設定
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor // 全フィールドを引数に持つコンストラクター
 @NoArgsConstructor // 引数なしのコンストラクター(JPAに必要)
 @Entity // このクラスがDBのテーブルに対応することを示す
+@Table(indexes = { // 検索条件・並び替えに使う列にインデックスを作成
+        @Index(name = "idx_item_name", columnList = "name"),
+        @Index(name = "idx_item_price", columnList = "price")
+})
 public class Item {
 
     @Id // テーブルに主キーであることを明示
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // ＠Idとセットで使用、IDを自動採番
+    // ＠Idとセットで使用、IDを自動採番。IDENTITYだとINSERTをまとめて送れないため、シーケンスで採番する
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = 50) // 50件分のIDをまとめて確保
     private Long id;
     private String name;
     private Integer price;
+
+    @Version // 更新のたびに1増える。同時更新の検出（楽観的ロック）とETagに使う
+    private Long version;
 }
@@ -0,0 +1,20 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 一括登録・更新・削除における1件ごとの処理結果
+ * @param index リクエスト内での位置（0始まり）
+ * @param id 対象アイテムのID（登録時は採番されたID）
+ * @param status 処理結果
+ * @param message 失敗時の理由。成功時はnull
+ */
+public record ItemBatchResult(int index, Long id, Status status, String message) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        INVALID,    // リクエスト内容が不正
+        NOT_FOUND,  // 対象のアイテムが存在しない
+        FAILED      // DBエラーでチャンクごと失敗
+    }
+}
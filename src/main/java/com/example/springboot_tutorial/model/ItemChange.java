@@ -0,0 +1,23 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 変更フィード（GET /items/changes）で送る1件の変更
+ * @param sequence 変更の通し番号（再接続時にLast-Event-IDとして渡すと、その次から受け取れる）
+ * @param type 変更の種類
+ * @param id 対象アイテムのID（RESETの場合はnull）
+ * @param item 変更後のアイテム（削除・RESETの場合はnull）
+ */
+public record ItemChange(long sequence, Type type, Long id, Item item) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        // 一括取り込みがあった、または保持していない変更を要求された。一覧を取得し直す必要がある
+        RESET
+    }
+
+    public static ItemChange reset(long sequence) {
+        return new ItemChange(sequence, Type.RESET, null, null);
+    }
+}
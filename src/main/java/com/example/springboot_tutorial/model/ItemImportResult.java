@@ -0,0 +1,8 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 一括取り込みの結果
+ * @param imported 取り込んだ（登録・上書きした）件数
+ */
+public record ItemImportResult(long imported) {
+}
@@ -0,0 +1,11 @@
+package com.example.springboot_tutorial.model;
+
+import java.util.List;
+
+/**
+ * キーセットページネーションの1ページ分の結果
+ * @param items このページのアイテム（ID昇順）
+ * @param nextCursor 次ページ取得時にafterへ渡すID。最終ページの場合はnull
+ */
+public record ItemPage(List<Item> items, Long nextCursor) {
+}
@@ -0,0 +1,31 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * アイテム検索の条件。nullの条件は絞り込みに使わない
+ * @param name アイテム名
+ * @param nameMatch アイテム名の一致方法
+ * @param minPrice 価格の下限（以上）
+ * @param maxPrice 価格の上限（以下）
+ * @param sortBy 並び替えに使う列
+ * @param descending 降順ならtrue
+ * @param limit 最大件数
+ */
+public record ItemSearchQuery(String name, NameMatch nameMatch, Integer minPrice, Integer maxPrice,
+                              SortKey sortBy, boolean descending, int limit) {
+
+    public enum NameMatch {
+        PREFIX,   // 前方一致（インデックスを使える）
+        CONTAINS  // 部分一致
+    }
+
+    public enum SortKey {
+        ID,
+        NAME,
+        PRICE
+    }
+
+    public enum SortOrder {
+        ASC,
+        DESC
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.springboot_tutorial.model;
+
+import java.util.List;
+
+/**
+ * アイテムの価格の集計結果
+ * @param count アイテム数
+ * @param pricedCount 価格が設定されているアイテム数（min・max・sum・averageの対象）
+ * @param sum 価格の合計
+ * @param min 価格の最小値。対象がない場合はnull
+ * @param max 価格の最大値。対象がない場合はnull
+ * @param average 価格の平均。対象がない場合はnull
+ * @param bucketWidth 価格帯の幅
+ * @param buckets 価格帯ごとの件数（価格の昇順、0件の価格帯は含まない）
+ */
+public record ItemStats(long count, long pricedCount, long sum, Integer min, Integer max, Double average,
+                        int bucketWidth, List<Bucket> buckets) {
+
+    /**
+     * 1つの価格帯
+     * @param from 価格の下限（以上）
+     * @param to 価格の上限（未満）
+     * @param count 件数
+     */
+    public record Bucket(long from, long to, long count) {
+    }
+}
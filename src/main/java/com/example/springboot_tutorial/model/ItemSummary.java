@@ -0,0 +1,8 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 検索結果などで使う、必要な列だけを持つアイテムの読み取り専用ビュー
+ * エンティティを生成せず、SELECTで指定した列から直接組み立てる
+ */
+public record ItemSummary(Long id, String name, Integer price) {
+}
@@ -0,0 +1,8 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 価格だけを更新するリクエスト
+ * @param price 更新後の価格
+ */
+public record PriceUpdate(Integer price) {
+}
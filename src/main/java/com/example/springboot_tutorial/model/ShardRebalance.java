@@ -0,0 +1,22 @@
+package com.example.springboot_tutorial.model;
+
+import java.util.List;
+
+/**
+ * シャード間でバケットを均等にした結果（dryRunの場合は移動の予定）
+ * @param dryRun 予定だけを返した場合はtrue
+ * @param moves バケットの移動
+ * @param orphansRemoved 中断した移動の残りとして削除した行数
+ * @param rowsMoved 移動した行数
+ */
+public record ShardRebalance(boolean dryRun, List<Move> moves, long orphansRemoved, long rowsMoved) {
+
+    /**
+     * 1つのバケットの移動
+     * @param bucket バケット番号
+     * @param from 移動元のシャード番号
+     * @param to 移動先のシャード番号
+     */
+    public record Move(int bucket, int from, int to) {
+    }
+}
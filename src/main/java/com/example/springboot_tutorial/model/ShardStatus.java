@@ -0,0 +1,10 @@
+package com.example.springboot_tutorial.model;
+
+/**
+ * 1つのシャードの状態
+ * @param shard シャード番号
+ * @param buckets 持っているバケット数
+ * @param items 保存しているアイテム数
+ */
+public record ShardStatus(int shard, int buckets, long items) {
+}
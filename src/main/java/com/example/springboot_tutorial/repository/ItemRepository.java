@@ -1,10 +1,74 @@
 package com.example.springboot_tutorial.repository;
 
 import com.example.springboot_tutorial.model.Item;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository //データベースとのやり取り担当
-public interface ItemRepository extends JpaRepository<Item, Long> {
+@Transactional(readOnly = true)  // 宣言したメソッドは、更新用に指定したもの以外は読み込み専用のトランザクションで実行する
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemSearchRepository {
     // 何も書かずとも、JpaRepositoryの継承だけで基本的なDB操作をやってくれる。
+
+    // 以下のfind〇〇Value(s)は、エンティティとして読み込まずにItemをコンストラクタで直接作る（select new）
+    // 永続化コンテキストに登録されないため、変更検知用のスナップショットやエンティティの管理情報を作らない
+    // 戻り値は管理対象外なので、書き換えても保存されない（更新にはfindByIdなどでエンティティを読み込む）
+    String ITEM_VALUE = "new com.example.springboot_tutorial.model.Item(i.id, i.name, i.price, i.version)";
+
+    // 全アイテムをID昇順で取得する
+    @Query("select " + ITEM_VALUE + " from Item i order by i.id")
+    List<Item> findAllValues();
+
+    // 指定IDより大きいアイテムをID昇順で最大limit件取得する（キーセットページネーション）
+    @Query("select " + ITEM_VALUE + " from Item i where i.id > :id order by i.id")
+    List<Item> findValuesAfter(@Param("id") Long id, Limit limit);
+
+    // IDを指定して1件取得する
+    @Query("select " + ITEM_VALUE + " from Item i where i.id = :id")
+    Optional<Item> findValueById(@Param("id") Long id);
+
+    // IDを指定して複数件をID昇順で取得する（IN句の1文）。存在しないIDは結果に含まれない
+    @Query("select " + ITEM_VALUE + " from Item i where i.id in :ids order by i.id")
+    List<Item> findValuesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 全アイテムをID昇順でカーソル読み込みする。トランザクション内で呼び出し、使用後はcloseすること
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select " + ITEM_VALUE + " from Item i order by i.id")
+    Stream<Item> streamAllValues();
+
+    // 指定IDの行をID順にロックして読む（SELECT ... FOR UPDATE）。呼び出し元のトランザクション内でだけ使う
+    // 同じトランザクションで書き込むまで他の更新を待たせ、更新前の値を正確に読むために使う
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Item i where i.id in :ids order by i.id")
+    List<Item> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // versionが一致する場合だけ1文のUPDATEで更新し、versionを1増やす。更新件数（0または1）を返す
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.name = :name, i.price = :price, i.version = i.version + 1 "
+            + "where i.id = :id and i.version = :version")
+    int updateIfVersionMatches(@Param("id") Long id, @Param("version") Long version,
+                               @Param("name") String name, @Param("price") Integer price);
+
+    // バージョンを確認せず、IDだけを条件に1文で削除する。削除件数（0または1）を返す
+    @Transactional
+    @Modifying
+    @Query("delete from Item i where i.id = :id")
+    int deleteItemById(@Param("id") Long id);
 }
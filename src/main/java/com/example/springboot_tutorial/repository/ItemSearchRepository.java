@@ -0,0 +1,12 @@
+package com.example.springboot_tutorial.repository;
+
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+
+import java.util.List;
+
+// 条件の組み合わせで変わる検索クエリを組み立てるため、ItemRepositoryに実装を追加する
+public interface ItemSearchRepository {
+
+    List<ItemSummary> search(ItemSearchQuery query);
+}
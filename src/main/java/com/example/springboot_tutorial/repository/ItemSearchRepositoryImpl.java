@@ -0,0 +1,88 @@
+package com.example.springboot_tutorial.repository;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ItemSearchRepositoryの実装（Spring Dataが「インターフェース名＋Impl」の名前で見つけて組み込む）
+ * 指定された条件だけをWHERE句に入れるため、name・priceのインデックスをそのまま使える
+ */
+public class ItemSearchRepositoryImpl implements ItemSearchRepository {
+
+    public static final char LIKE_ESCAPE = '\\';
+
+    private final EntityManager entityManager;
+
+    public ItemSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<ItemSummary> search(ItemSearchQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ItemSummary> criteria = cb.createQuery(ItemSummary.class);
+        Root<Item> item = criteria.from(Item.class);
+        Path<Long> id = item.get("id");
+        Path<String> name = item.get("name");
+        Path<Integer> price = item.get("price");
+
+        // エンティティではなく、必要な3列だけを取得する
+        criteria.select(cb.construct(ItemSummary.class, id, name, price));
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (query.name() != null && !query.name().isEmpty()) {
+            String escaped = escapeLike(query.name());
+            String pattern = query.nameMatch() == ItemSearchQuery.NameMatch.CONTAINS
+                    ? "%" + escaped + "%"
+                    : escaped + "%";
+            predicates.add(cb.like(name, pattern, LIKE_ESCAPE));
+        }
+        if (query.minPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(price, query.minPrice()));
+        }
+        if (query.maxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(price, query.maxPrice()));
+        }
+        criteria.where(predicates.toArray(new Predicate[0]));
+
+        Path<?> sortPath = switch (query.sortBy()) {
+            case NAME -> name;
+            case PRICE -> price;
+            case ID -> id;
+        };
+        List<Order> orders = new ArrayList<>();
+        orders.add(query.descending() ? cb.desc(sortPath) : cb.asc(sortPath));
+        if (sortPath != id) {
+            // 同じ値が並んだ場合も結果の順序が変わらないよう、IDを第2キーにする
+            orders.add(query.descending() ? cb.desc(id) : cb.asc(id));
+        }
+        criteria.orderBy(orders);
+
+        return entityManager.createQuery(criteria)
+                .setMaxResults(query.limit())
+                .getResultList();
+    }
+
+    // LIKEの特殊文字（% _ \）を文字として扱うようにエスケープする（シャードへの検索でも使う）
+    public static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
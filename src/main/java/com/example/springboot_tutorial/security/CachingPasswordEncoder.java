@@ -0,0 +1,127 @@
+package com.example.springboot_tutorial.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 照合に成功した認証情報を一定時間キャッシュするPasswordEncoder
+ * HTTP Basic認証ではリクエストごとにBCryptの照合が走るため、同じ認証情報の2回目以降は照合を省略する。
+ * キャッシュのキーは「平文パスワード＋保存済みハッシュ」を起動ごとにランダムな鍵でHMACしたもので、平文は保持しない。
+ * 保存済みハッシュを含めるため、パスワードを変更すると古いエントリは使われなくなる。失敗した照合はキャッシュしない
+ */
+public class CachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final SecretKeySpec hmacKey;
+
+    // キー → 有効期限(System.nanoTime基準)。アクセス順のLRU（thisで排他）
+    private final Map<String, Long> verified;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verificationNanos = new LongAdder();
+
+    public CachingPasswordEncoder(PasswordEncoder delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > CachingPasswordEncoder.this.maxSize;
+            }
+        };
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        String key = cacheKey(rawPassword, encodedPassword);
+        synchronized (this) {
+            Long expiresAt = verified.get(key);
+            if (expiresAt != null) {
+                if (expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return true;
+                }
+                verified.remove(key);
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        boolean matched = delegate.matches(rawPassword, encodedPassword);
+        verifications.increment();
+        verificationNanos.add(System.nanoTime() - start);
+        if (matched) {
+            synchronized (this) {
+                verified.put(key, System.nanoTime() + ttlNanos);
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * ヒット数・ミス数と、照合にかかった時間・キャッシュで省略できた時間の推計を返す
+     */
+    public Stats stats() {
+        long count = verifications.sum();
+        long totalNanos = verificationNanos.sum();
+        long hitCount = hits.sum();
+        // 省略できた時間は「ヒット数 × 実際の照合1回あたりの平均時間」で推計する
+        long savedNanos = count == 0 ? 0 : hitCount * (totalNanos / count);
+        return new Stats(hitCount, misses.sum(), totalNanos, savedNanos);
+    }
+
+    private String cacheKey(CharSequence rawPassword, String encodedPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available.", e);
+        }
+    }
+
+    /**
+     * @param hits キャッシュで照合を省略した回数
+     * @param misses 実際に照合した回数
+     * @param verificationNanos 実際の照合にかかった時間の合計
+     * @param savedNanos キャッシュで省略できた照合時間の推計
+     */
+    public record Stats(long hits, long misses, long verificationNanos, long savedNanos) {
+    }
+}
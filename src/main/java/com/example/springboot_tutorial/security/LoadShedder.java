@@ -0,0 +1,73 @@
+package com.example.springboot_tutorial.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 過負荷時にリクエストを早めに断る（503）判定
+ * 処理中のリクエスト数が上限に達している場合と、DBコネクションの空きを待っているスレッドが多い場合に断る
+ * 断ったリクエストはスレッドやコネクションを使わずにすぐ返るため、受け付けたリクエストのレイテンシが保たれる
+ */
+public class LoadShedder {
+
+    private final int maxInFlight;
+    private final int maxPoolWaiters;
+    private final IntSupplier poolWaiters;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shedInFlight = new LongAdder();
+    private final LongAdder shedPoolWait = new LongAdder();
+
+    /**
+     * @param maxInFlight 同時に処理するリクエスト数の上限（0以下の場合は制限しない）
+     * @param maxPoolWaiters コネクションを待っているスレッド数がこれを超えたら断る（0以下の場合は見ない）
+     * @param poolWaiters コネクションを待っているスレッド数
+     */
+    public LoadShedder(int maxInFlight, int maxPoolWaiters, IntSupplier poolWaiters) {
+        this.maxInFlight = maxInFlight;
+        this.maxPoolWaiters = maxPoolWaiters;
+        this.poolWaiters = poolWaiters;
+    }
+
+    /**
+     * リクエストの処理を始めてよいか判定する。trueの場合は処理後に必ずexit()を呼ぶこと
+     */
+    public boolean tryEnter() {
+        if (maxPoolWaiters > 0 && poolWaiters.getAsInt() > maxPoolWaiters) {
+            shedPoolWait.increment();
+            return false;
+        }
+        if (maxInFlight <= 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                shedInFlight.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 過負荷判定の状態
+     * @param inFlight 処理中のリクエスト数
+     * @param shedInFlight 処理中のリクエスト数が上限に達していたため断った数
+     * @param shedPoolWait コネクション待ちが多かったため断った数
+     */
+    public record Stats(int inFlight, long shedInFlight, long shedPoolWait) {
+    }
+
+    public Stats stats() {
+        return new Stats(inFlight.get(), shedInFlight.sum(), shedPoolWait.sum());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.springboot_tutorial.security;
+
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * 認証ユーザーごとに、リクエストの読み込みをプライマリで行うかを決めるフィルタ（レプリカ使用時のみ）
+ * 書き込みのリクエスト（GET・HEAD・OPTIONS以外）と、直前に書き込みが成功したユーザーのリクエストはプライマリで読む
+ * 非同期のリクエストは処理が終わった時点（非同期ディスパッチ）で書き込みを記録する
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS =
+            Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    // 非同期処理の完了後にも呼ばれるようにする
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String client = authentication.getName();
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        // 書き込み中の読み込み（存在チェックやバージョンの確認）も、レプリカの古い値を見ないようプライマリで行う
+        ReadYourWrites.setPrimaryRequired(write || readYourWrites.wroteRecently(client));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.clear();
+            if (write && !request.isAsyncStarted() && response.getStatus() < 400) {
+                readYourWrites.recordWrite(client);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.springboot_tutorial.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * クライアント（認証済みユーザー名）ごとのトークンバケット
+ * 1秒あたりrequestsPerSecond個のトークンが補充され、最大burst個まで貯まる
+ * バケットの状態は「次のトークンが空く時刻」1つだけで表し（GCRA）、AtomicLongのCASで更新するためロックを取らない
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+
+    // ユーザー名 → 理論上の到着時刻（System.nanoTime基準）
+    // 認証済みのユーザー名だけがキーになるため、エントリ数は登録ユーザー数で上限が決まる
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param requestsPerSecond 1秒あたりに補充するトークン数（0以下の場合は制限しない）
+     * @param burst バケットに貯められるトークンの最大数
+     */
+    public TokenBucketRateLimiter(double requestsPerSecond, int burst) {
+        this.intervalNanos = requestsPerSecond > 0 ? (long) (1_000_000_000L / requestsPerSecond) : 0;
+        this.capacityNanos = intervalNanos * Math.max(burst, 1);
+    }
+
+    /**
+     * トークンを1つ取得する
+     * @param key クライアントを識別するキー
+     * @return 取得できた場合は0、できなかった場合は次のトークンが空くまでの時間（ナノ秒）
+     */
+    public long tryAcquire(String key) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime() - capacityNanos));
+        long now = System.nanoTime();
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now - capacityNanos) + intervalNanos;
+            if (next - now > 0) {
+                rejected.increment();
+                return next - now;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return intervalNanos > 0;
+    }
+
+    /**
+     * 流量制限の状態
+     * @param allowed 許可したリクエスト数
+     * @param rejected 拒否したリクエスト数
+     */
+    public record Stats(long allowed, long rejected) {
+    }
+
+    public Stats stats() {
+        return new Stats(allowed.sum(), rejected.sum());
+    }
+}
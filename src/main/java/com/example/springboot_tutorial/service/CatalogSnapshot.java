@@ -0,0 +1,627 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * アイテム一覧を列ごとのプリミティブ配列で持つ、変更されないスナップショット（ItemCatalogIndexが作る）
+ * 行はID順に並び、i番目の行のIDがids[i]、価格がprices[i]になる（エンティティや包んだLong・Integerは持たない）
+ * 名前は辞書の番号で持ち、同じ名前の文字列は1つだけ保持する
+ * 変更は新しいスナップショットを作って反映するため、読み込み側はロックなしで参照できる
+ * 行に反映する前の変更は、行の配列を共有したまま上に重ねて（withChanges）読み込み時にID順・価格順へ混ぜる
+ */
+public final class CatalogSnapshot {
+
+    private static final int NO_NAME = -1;
+    // バージョンがNULLの行
+    static final long NO_VERSION = -1;
+    // 変更で使われなくなった名前が、行数よりこれ以上多くなったら辞書を作り直す
+    private static final int COMPACT_SLACK = 1024;
+    // DBの検索と同じ価格順（価格がNULLが先頭、同じ価格はID順）
+    private static final Comparator<Item> PRICE_ORDER = Comparator
+            .comparing(Item::getPrice, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()))
+            .thenComparing(Item::getId);
+
+    // 行数（重ねた変更は含まない）
+    private final int size;
+    private final long[] ids;
+    private final int[] prices;
+    private final BitSet nullPrices;
+    private final long[] versions;
+    private final int[] nameCodes;
+    // 名前の辞書。後のスナップショットが後ろに追記することがあるが、このスナップショットが使う範囲（nameCount未満）は変わらない
+    private final String[] names;
+    private final int nameCount;
+    // 価格順（価格がNULLの行が先頭、同じ価格はID順）の行番号。最初に価格順で検索した時に作る
+    private volatile int[] byPrice;
+    // 行の上に重ねた変更（ID → 変更後のアイテム、行の削除はnull）。行にない削除と古いバージョンは含まない
+    private final NavigableMap<Long, Item> overlay;
+    // 行の配列を持つスナップショット（価格順の行番号を共有する）。変更を重ねていない場合はthis
+    private final CatalogSnapshot base;
+    // 変更を重ねた後のアイテム数
+    private final int itemCount;
+
+    private CatalogSnapshot(int size, long[] ids, int[] prices, BitSet nullPrices, long[] versions,
+                            int[] nameCodes, String[] names, int nameCount) {
+        this.size = size;
+        this.ids = ids;
+        this.prices = prices;
+        this.nullPrices = nullPrices;
+        this.versions = versions;
+        this.nameCodes = nameCodes;
+        this.names = names;
+        this.nameCount = nameCount;
+        this.overlay = Collections.emptyNavigableMap();
+        this.base = this;
+        this.itemCount = size;
+    }
+
+    private CatalogSnapshot(CatalogSnapshot base, NavigableMap<Long, Item> overlay, int itemCount) {
+        this.size = base.size;
+        this.ids = base.ids;
+        this.prices = base.prices;
+        this.nullPrices = base.nullPrices;
+        this.versions = base.versions;
+        this.nameCodes = base.nameCodes;
+        this.names = base.names;
+        this.nameCount = base.nameCount;
+        this.overlay = overlay;
+        this.base = base;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * 検索条件をこのスナップショットで処理できるか
+     * 名前での絞り込み・並び替えはDB（idx_item_name）で行う
+     */
+    public static boolean supports(ItemSearchQuery query) {
+        return (query.name() == null || query.name().isEmpty()) && query.sortBy() != ItemSearchQuery.SortKey.NAME;
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * 全アイテムをID順に返す
+     * 返すリストは配列を参照するビューで、要素を取り出すたびにItemを作る（一覧全体のItemは保持しない）
+     * 変更を重ねている場合は先頭から順に読むリストになる（getは先頭から数える）
+     */
+    public List<Item> items() {
+        return overlay.isEmpty() ? new Rows(0, size) : new Merged();
+    }
+
+    /**
+     * 指定したIDより後ろのアイテムをID順に最大limit件返す（キーセットページネーション）
+     */
+    public List<Item> itemsAfter(long afterId, int limit) {
+        int from = upperBound(afterId);
+        if (overlay.isEmpty()) {
+            return new Rows(from, (int) Math.min((long) from + limit, size));
+        }
+        List<Item> page = new ArrayList<>(Math.min(limit, itemCount));
+        Cursor cursor = new Cursor(from, overlay.tailMap(afterId, false), false);
+        while (page.size() < limit && cursor.next()) {
+            page.add(cursor.item());
+        }
+        return page;
+    }
+
+    /**
+     * 価格帯で絞り込み、IDまたは価格で並べたアイテムを返す
+     * 価格順の場合は価格順の行番号を二分探索するため、範囲外の行は読まない
+     * 並び順はDBの検索と同じ（価格がNULLの行は昇順で先頭・降順で末尾、同じ値はID順）
+     * @param query supports(query)がtrueの検索条件（件数は丸め済み）
+     */
+    public List<ItemSummary> search(ItemSearchQuery query) {
+        if (!supports(query)) {
+            throw new IllegalArgumentException("Name conditions are not supported by the catalog index.");
+        }
+        boolean filtered = query.minPrice() != null || query.maxPrice() != null;
+        int minPrice = query.minPrice() != null ? query.minPrice() : Integer.MIN_VALUE;
+        int maxPrice = query.maxPrice() != null ? query.maxPrice() : Integer.MAX_VALUE;
+        int limit = Math.min(query.limit(), itemCount);
+        List<ItemSummary> result = new ArrayList<>(limit);
+
+        if (query.sortBy() == ItemSearchQuery.SortKey.PRICE) {
+            int[] order = base.byPrice();
+            // 絞り込む場合は価格がNULLの行（先頭）を除く
+            int from = filtered ? firstPriceAtLeast(order, nullPrices.cardinality(), minPrice) : 0;
+            int to = filtered ? firstPriceAbove(order, from, maxPrice) : size;
+            if (!overlay.isEmpty()) {
+                return searchWithChanges(query.descending(), order, from, to, filtered, minPrice, maxPrice, limit);
+            }
+            for (int i = 0; i < to - from && result.size() < limit; i++) {
+                int row = order[query.descending() ? to - 1 - i : from + i];
+                result.add(summaryAt(row));
+            }
+            return result;
+        }
+
+        if (!overlay.isEmpty()) {
+            Cursor cursor = query.descending()
+                    ? new Cursor(size - 1, overlay.descendingMap(), true)
+                    : new Cursor(0, overlay, false);
+            while (result.size() < limit && cursor.next()) {
+                if (!filtered || inRange(cursor.price(), minPrice, maxPrice)) {
+                    result.add(cursor.summary());
+                }
+            }
+            return result;
+        }
+
+        for (int i = 0; i < size && result.size() < limit; i++) {
+            int row = query.descending() ? size - 1 - i : i;
+            if (filtered && (nullPrices.get(row) || prices[row] < minPrice || prices[row] > maxPrice)) {
+                continue;
+            }
+            result.add(summaryAt(row));
+        }
+        return result;
+    }
+
+    /**
+     * 変更（値がnullは削除）を行の上に重ねたスナップショットを返す。行の配列はコピーせずに共有する
+     * 変更の件数に比例する時間で作れるため、書き込みのたびに作り直せる（行への反映はapplyで行う）
+     * 既に新しいバージョンを持っている行には、古い変更を重ねない
+     */
+    CatalogSnapshot withChanges(SortedMap<Long, Item> changes) {
+        TreeMap<Long, Item> effective = new TreeMap<>();
+        int count = base.size;
+        for (Map.Entry<Long, Item> change : changes.entrySet()) {
+            int row = Arrays.binarySearch(ids, 0, size, change.getKey());
+            Item item = change.getValue();
+            if (row < 0) {
+                if (item != null) {
+                    effective.put(change.getKey(), item);
+                    count++;
+                }
+            } else if (item == null) {
+                effective.put(change.getKey(), null);
+                count--;
+            } else if ((item.getVersion() != null ? item.getVersion() : NO_VERSION) >= versions[row]) {
+                effective.put(change.getKey(), item);
+            }
+        }
+        return effective.isEmpty() ? base : new CatalogSnapshot(base, effective, count);
+    }
+
+    /**
+     * 変更（ID順、値がnullは削除）を行に反映した新しいスナップショットを作る（重ねた変更は含めない）
+     * 全行をコピーするため、ItemCatalogIndexが読み込み・書き込みのスレッドとは別のスレッドで呼ぶ
+     * 既に新しいバージョンを持っている行には、古い変更を反映しない
+     */
+    CatalogSnapshot apply(SortedMap<Long, Item> changes) {
+        if (base != this) {
+            return base.apply(changes);
+        }
+        Builder builder = new Builder(size + changes.size(), names, nameCount);
+        Iterator<Map.Entry<Long, Item>> pending = changes.entrySet().iterator();
+        Map.Entry<Long, Item> change = pending.hasNext() ? pending.next() : null;
+        for (int row = 0; row < size; row++) {
+            long id = ids[row];
+            // このスナップショットにないIDの登録
+            while (change != null && change.getKey() < id) {
+                if (change.getValue() != null) {
+                    builder.add(change.getValue());
+                }
+                change = pending.hasNext() ? pending.next() : null;
+            }
+            if (change == null || change.getKey() != id) {
+                builder.copyRow(this, row);
+                continue;
+            }
+            Item item = change.getValue();
+            if (item != null) {
+                long version = item.getVersion() != null ? item.getVersion() : NO_VERSION;
+                if (version < versions[row]) {
+                    builder.copyRow(this, row);
+                } else if (Objects.equals(item.getName(), nameAt(row))) {
+                    // 価格だけの更新では名前の辞書を増やさない
+                    builder.addRow(id, nameCodes[row], item.getPrice() != null ? item.getPrice() : 0,
+                            item.getPrice() == null, version);
+                } else {
+                    builder.add(item);
+                }
+            }
+            change = pending.hasNext() ? pending.next() : null;
+        }
+        while (change != null) {
+            if (change.getValue() != null) {
+                builder.add(change.getValue());
+            }
+            change = pending.hasNext() ? pending.next() : null;
+        }
+        CatalogSnapshot next = builder.build();
+        return next.nameCount > 2 * next.size + COMPACT_SLACK ? next.compact() : next;
+    }
+
+    Item itemAt(int row) {
+        return new Item(ids[row], nameAt(row), priceAt(row), versions[row] == NO_VERSION ? null : versions[row]);
+    }
+
+    private ItemSummary summaryAt(int row) {
+        return new ItemSummary(ids[row], nameAt(row), priceAt(row));
+    }
+
+    private static ItemSummary summaryOf(Item item) {
+        return new ItemSummary(item.getId(), item.getName(), item.getPrice());
+    }
+
+    private static boolean inRange(Integer price, int minPrice, int maxPrice) {
+        return price != null && price >= minPrice && price <= maxPrice;
+    }
+
+    // 行の価格順の範囲と、重ねた変更を価格順に並べたものを突き合わせる（変更で置き換わった行は飛ばす）
+    private List<ItemSummary> searchWithChanges(boolean descending, int[] order, int from, int to,
+                                                boolean filtered, int minPrice, int maxPrice, int limit) {
+        List<Item> changed = new ArrayList<>();
+        for (Item item : overlay.values()) {
+            if (item != null && (!filtered || inRange(item.getPrice(), minPrice, maxPrice))) {
+                changed.add(item);
+            }
+        }
+        changed.sort(descending ? PRICE_ORDER.reversed() : PRICE_ORDER);
+
+        List<ItemSummary> result = new ArrayList<>(limit);
+        int i = 0;
+        int j = 0;
+        while (result.size() < limit) {
+            while (i < to - from && overlay.containsKey(ids[order[descending ? to - 1 - i : from + i]])) {
+                i++;
+            }
+            int row = i < to - from ? order[descending ? to - 1 - i : from + i] : -1;
+            Item item = j < changed.size() ? changed.get(j) : null;
+            if (row < 0 && item == null) {
+                break;
+            }
+            if (item == null || (row >= 0 && (comparePriceOrder(row, item) < 0) != descending)) {
+                result.add(summaryAt(row));
+                i++;
+            } else {
+                result.add(summaryOf(item));
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // 行とアイテムの価格順での比較（IDは重ならない）
+    private int comparePriceOrder(int row, Item item) {
+        boolean rowNull = nullPrices.get(row);
+        boolean itemNull = item.getPrice() == null;
+        if (rowNull != itemNull) {
+            return rowNull ? -1 : 1;
+        }
+        if (!rowNull && prices[row] != item.getPrice()) {
+            return Integer.compare(prices[row], item.getPrice());
+        }
+        return Long.compare(ids[row], item.getId());
+    }
+
+    private String nameAt(int row) {
+        int code = nameCodes[row];
+        return code == NO_NAME ? null : names[code];
+    }
+
+    private Integer priceAt(int row) {
+        return nullPrices.get(row) ? null : prices[row];
+    }
+
+    // 使われている名前だけで辞書を作り直す
+    private CatalogSnapshot compact() {
+        Builder builder = new Builder(size);
+        for (int row = 0; row < size; row++) {
+            builder.add(ids[row], nameAt(row), priceAt(row), versions[row]);
+        }
+        return builder.build();
+    }
+
+    private int[] byPrice() {
+        int[] order = byPrice;
+        if (order != null) {
+            return order;
+        }
+        // 価格（上位32ビット）と行番号（下位32ビット）を1つのlongにしてソートすると、同じ価格は行番号＝ID順に並ぶ
+        int nulls = nullPrices.cardinality();
+        long[] keys = new long[size - nulls];
+        order = new int[size];
+        int position = 0;
+        int key = 0;
+        for (int row = 0; row < size; row++) {
+            if (nullPrices.get(row)) {
+                order[position++] = row;
+            } else {
+                keys[key++] = ((long) prices[row] << 32) | row;
+            }
+        }
+        Arrays.sort(keys);
+        for (long packed : keys) {
+            order[position++] = (int) packed;
+        }
+        byPrice = order;  // 複数のスレッドが同時に作っても結果は同じ
+        return order;
+    }
+
+    // 価格順の行番号のうち、from以降で価格がprice以上になる最初の位置
+    private int firstPriceAtLeast(int[] order, int from, int price) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[order[mid]] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 価格順の行番号のうち、from以降で価格がpriceより大きくなる最初の位置
+    private int firstPriceAbove(int[] order, int from, int price) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[order[mid]] <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // IDがidより大きい最初の行
+    private int upperBound(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // 行番号の範囲を参照するリスト
+    private final class Rows extends AbstractList<Item> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+
+        private Rows(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Item get(int index) {
+            Objects.checkIndex(index, to - from);
+            return itemAt(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    // 行と重ねた変更をID順に混ぜて読むリスト
+    private final class Merged extends AbstractList<Item> {
+
+        @Override
+        public Iterator<Item> iterator() {
+            Cursor cursor = new Cursor(0, overlay, false);
+            return new Iterator<>() {
+                private boolean ready = cursor.next();
+
+                @Override
+                public boolean hasNext() {
+                    return ready;
+                }
+
+                @Override
+                public Item next() {
+                    if (!ready) {
+                        throw new NoSuchElementException();
+                    }
+                    Item item = cursor.item();
+                    ready = cursor.next();
+                    return item;
+                }
+            };
+        }
+
+        @Override
+        public Item get(int index) {
+            Objects.checkIndex(index, itemCount);
+            Iterator<Item> items = iterator();
+            for (int i = 0; i < index; i++) {
+                items.next();
+            }
+            return items.next();
+        }
+
+        @Override
+        public int size() {
+            return itemCount;
+        }
+    }
+
+    // 行と重ねた変更をID順（descendingの場合は逆順）に1件ずつ進める。同じIDは変更を優先し、削除は飛ばす
+    private final class Cursor {
+
+        private final Iterator<Map.Entry<Long, Item>> changes;
+        private final boolean descending;
+        private int nextRow;
+        private Map.Entry<Long, Item> change;
+        // 現在の位置（行の場合はrow、変更の場合はitem）
+        private int row = -1;
+        private Item item;
+
+        private Cursor(int fromRow, NavigableMap<Long, Item> changes, boolean descending) {
+            this.changes = changes.entrySet().iterator();
+            this.descending = descending;
+            this.nextRow = fromRow;
+            this.change = this.changes.hasNext() ? this.changes.next() : null;
+        }
+
+        private boolean next() {
+            while (true) {
+                boolean hasRow = descending ? nextRow >= 0 : nextRow < size;
+                if (!hasRow && change == null) {
+                    return false;
+                }
+                long rowId = hasRow ? ids[nextRow] : 0;
+                if (change != null && (!hasRow || change.getKey() == rowId || (change.getKey() < rowId) != descending)) {
+                    if (hasRow && change.getKey() == rowId) {
+                        nextRow += descending ? -1 : 1;
+                    }
+                    row = -1;
+                    item = change.getValue();
+                    change = changes.hasNext() ? changes.next() : null;
+                    if (item != null) {
+                        return true;
+                    }
+                } else {
+                    row = nextRow;
+                    item = null;
+                    nextRow += descending ? -1 : 1;
+                    return true;
+                }
+            }
+        }
+
+        private Item item() {
+            return row >= 0 ? itemAt(row) : item;
+        }
+
+        private ItemSummary summary() {
+            return row >= 0 ? summaryAt(row) : summaryOf(item);
+        }
+
+        private Integer price() {
+            return row >= 0 ? priceAt(row) : item.getPrice();
+        }
+    }
+
+    /**
+     * ID順に行を追加してスナップショットを作る
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] ids;
+        private int[] prices;
+        private final BitSet nullPrices = new BitSet();
+        private long[] versions;
+        private int[] nameCodes;
+        private String[] names;
+        private int nameCount;
+        // 名前 → 辞書の番号。全件を読み込む時だけ使い、スナップショットには残さない
+        private final Map<String, Integer> codes;
+
+        public Builder(int expectedSize) {
+            allocate(expectedSize);
+            this.names = new String[16];
+            this.codes = new HashMap<>();
+        }
+
+        // 既存の辞書の後ろに追記する（同じ名前でも新しい番号を振る）
+        private Builder(int expectedSize, String[] names, int nameCount) {
+            allocate(expectedSize);
+            this.names = names;
+            this.nameCount = nameCount;
+            this.codes = null;
+        }
+
+        public void add(Item item) {
+            add(item.getId(), item.getName(), item.getPrice(), item.getVersion() != null ? item.getVersion() : NO_VERSION);
+        }
+
+        public void add(long id, String name, Integer price, long version) {
+            addRow(id, encode(name), price != null ? price : 0, price == null, version);
+        }
+
+        public CatalogSnapshot build() {
+            return new CatalogSnapshot(size, trim(ids), trim(prices), nullPrices, trim(versions), trim(nameCodes),
+                    codes != null ? Arrays.copyOf(names, nameCount) : names, nameCount);
+        }
+
+        // 元のスナップショットと同じ辞書を使っている場合だけ、名前の番号をそのまま使える
+        private void copyRow(CatalogSnapshot source, int row) {
+            addRow(source.ids[row], source.nameCodes[row], source.prices[row], source.nullPrices.get(row),
+                    source.versions[row]);
+        }
+
+        private void addRow(long id, int nameCode, int price, boolean nullPrice, long version) {
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("Items must be added in ascending ID order: " + id);
+            }
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+            }
+            ids[size] = id;
+            if (nullPrice) {
+                nullPrices.set(size);
+            }
+            prices[size] = price;
+            versions[size] = version;
+            nameCodes[size] = nameCode;
+            size++;
+        }
+
+        private int encode(String name) {
+            if (name == null) {
+                return NO_NAME;
+            }
+            if (codes != null) {
+                Integer code = codes.get(name);
+                if (code != null) {
+                    return code;
+                }
+            }
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, Math.max(16, nameCount * 2));
+            }
+            names[nameCount] = name;
+            if (codes != null) {
+                codes.put(name, nameCount);
+            }
+            return nameCount++;
+        }
+
+        private void allocate(int expectedSize) {
+            ids = new long[expectedSize];
+            prices = new int[expectedSize];
+            versions = new long[expectedSize];
+            nameCodes = new int[expectedSize];
+        }
+
+        private long[] trim(long[] values) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+
+        private int[] trim(int[] values) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * アイテム一覧全体のバージョン
+ * アイテムが変更されるたびに1増えるカウンタで、一覧を読み込まずにETagとLast-Modifiedを作るために使う
+ */
+@Component
+public class CatalogVersion {
+
+    // 再起動でカウンタが0に戻っても以前のETagと一致しないよう、起動時刻をETagに含める
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong counter = new AtomicLong();
+    private volatile long lastModified = epoch;
+
+    @EventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        bump();
+    }
+
+    @EventListener
+    public void onItemsImported(ItemsImportedEvent event) {
+        bump();
+    }
+
+    /**
+     * バージョンを進める
+     */
+    public void bump() {
+        lastModified = System.currentTimeMillis();
+        counter.incrementAndGet();
+    }
+
+    /**
+     * 現在のバージョンを表す弱いETag（W/"起動時刻-カウンタ"）
+     * 強いETagを付けたレスポンスはTomcatが圧縮しないため、gzipと非圧縮で同じ値を使える弱いETagにする
+     * （一覧はIf-None-Matchでだけ使う。If-Matchに使うアイテム1件のETagは強いETagのまま）
+     */
+    public String eTag() {
+        return "W/\"" + Long.toString(epoch, 36) + "-" + Long.toString(counter.get(), 36) + "\"";
+    }
+
+    /**
+     * 最後に変更された時刻（エポックミリ秒）
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+}
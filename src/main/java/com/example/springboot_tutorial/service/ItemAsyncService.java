@@ -0,0 +1,22 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ItemAsyncService {
+
+    CompletableFuture<List<Item>> findAll();
+
+    CompletableFuture<ItemPage> findPage(Long afterId, int size);
+
+    CompletableFuture<Item> findById(Long id);
+
+    CompletableFuture<Item> createItem(Item item);
+
+    CompletableFuture<Item> updateItem(Long id, Item newItemData, Long expectedVersion);
+
+    CompletableFuture<Void> deleteItem(Long id);
+}
@@ -0,0 +1,65 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ItemServiceの処理をタスク実行用のスレッドプールで実行し、結果をCompletableFutureで返す
+ * 入力チェック・キャッシュ・イベント通知はItemServiceImplと共通（処理自体は委譲するだけ）
+ * リクエストを受けたTomcatのスレッドはDB処理の完了を待たずに解放される
+ */
+@Service
+public class ItemAsyncServiceImpl implements ItemAsyncService {
+
+    private final ItemService itemService;
+    private final AsyncTaskExecutor executor;
+
+    public ItemAsyncServiceImpl(ItemService itemService,
+                                @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                                AsyncTaskExecutor executor) {
+        this.itemService = itemService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<Item>> findAll() {
+        return CompletableFuture.supplyAsync(itemService::findAll, executor);
+    }
+
+    @Override
+    public CompletableFuture<ItemPage> findPage(Long afterId, int size) {
+        return CompletableFuture.supplyAsync(() -> itemService.findPage(afterId, size), executor);
+    }
+
+    @Override
+    public CompletableFuture<Item> findById(Long id) {
+        return CompletableFuture.supplyAsync(() -> itemService.findById(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<Item> createItem(Item item) {
+        return CompletableFuture.supplyAsync(() -> itemService.createItem(item), executor);
+    }
+
+    /**
+     * @param expectedVersion 更新前のバージョン。nullの場合はバージョンを確認せずに更新する
+     */
+    @Override
+    public CompletableFuture<Item> updateItem(Long id, Item newItemData, Long expectedVersion) {
+        return CompletableFuture.supplyAsync(() -> expectedVersion == null
+                ? itemService.updateItem(id, newItemData)
+                : itemService.updateItem(id, newItemData, expectedVersion), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteItem(Long id) {
+        return CompletableFuture.runAsync(() -> itemService.deleteItem(id), executor);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemBatchResult;
+
+import java.util.Iterator;
+import java.util.List;
+
+public interface ItemBatchService {
+
+    List<ItemBatchResult> createItems(Iterator<Item> items);
+
+    List<ItemBatchResult> updateItems(Iterator<Item> items);
+
+    List<ItemBatchResult> deleteItems(Iterator<Long> ids);
+}
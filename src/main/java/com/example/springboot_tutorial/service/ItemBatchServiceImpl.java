@@ -0,0 +1,256 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemBatchResult;
+import com.example.springboot_tutorial.model.ItemBatchResult.Status;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * アイテムの一括登録・更新・削除
+ * 入力をchunkSize件ずつに区切り、チャンクごとに1トランザクションでまとめてSQLを送る
+ */
+@Timed(value = "item.batch.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
+@Service
+public class ItemBatchServiceImpl implements ItemBatchService {
+
+    private final ItemRepository itemRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ItemCache itemCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PriceUpdateBuffer priceUpdateBuffer;
+    private final int chunkSize;
+
+    public ItemBatchServiceImpl(ItemRepository itemRepository,
+                                EntityManager entityManager,
+                                TransactionTemplate transactionTemplate,
+                                ItemCache itemCache,
+                                ApplicationEventPublisher eventPublisher,
+                                PriceUpdateBuffer priceUpdateBuffer,
+                                @Value("${item.batch.chunk-size:1000}") int chunkSize) {
+        this.itemRepository = itemRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.itemCache = itemCache;
+        this.eventPublisher = eventPublisher;
+        this.priceUpdateBuffer = priceUpdateBuffer;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * アイテムを一括登録する
+     * @param items 登録するアイテム（IDは指定不可）
+     * @return 1件ごとの処理結果（入力と同じ順序）
+     */
+    @Override
+    public List<ItemBatchResult> createItems(Iterator<Item> items) {
+        return inChunks(items, this::createChunk);
+    }
+
+    /**
+     * アイテムを一括更新する
+     * @param items 更新後のアイテム情報（IDは必須）
+     * @return 1件ごとの処理結果（入力と同じ順序）
+     */
+    @Override
+    public List<ItemBatchResult> updateItems(Iterator<Item> items) {
+        return inChunks(items, this::updateChunk);
+    }
+
+    /**
+     * アイテムを一括削除する
+     * @param ids 削除対象のアイテムID
+     * @return 1件ごとの処理結果（入力と同じ順序）
+     */
+    @Override
+    public List<ItemBatchResult> deleteItems(Iterator<Long> ids) {
+        return inChunks(ids, this::deleteChunk);
+    }
+
+    // 入力をchunkSize件ずつ読み込んで処理し、結果のindexを入力全体での位置に揃える
+    private <T> List<ItemBatchResult> inChunks(Iterator<T> source, Function<List<T>, ItemBatchResult[]> processor) {
+        List<ItemBatchResult> results = new ArrayList<>();
+        int offset = 0;
+        while (source.hasNext()) {
+            List<T> chunk = new ArrayList<>(chunkSize);
+            while (source.hasNext() && chunk.size() < chunkSize) {
+                chunk.add(source.next());
+            }
+            for (ItemBatchResult result : processor.apply(chunk)) {
+                results.add(new ItemBatchResult(offset + result.index(), result.id(), result.status(), result.message()));
+            }
+            offset += chunk.size();
+        }
+        return results;
+    }
+
+    private ItemBatchResult[] createChunk(List<Item> chunk) {
+        ItemBatchResult[] results = new ItemBatchResult[chunk.size()];
+        List<Item> validItems = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Item item = chunk.get(i);
+            if (item == null || item.getId() != null) {
+                results[i] = new ItemBatchResult(i, null, Status.INVALID, "A new item cannot have an ID");
+            } else {
+                validItems.add(item);
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // IDはシーケンスからまとめて確保されるため、INSERTはbatch_size件ずつJDBCバッチで送られる
+                itemRepository.saveAll(validItems);
+                flushAndClear();
+            });
+        } catch (DataAccessException | TransactionException e) {
+            // ロールバックされたため、採番済みのIDは返さない
+            fillFailed(results, i -> null, "Database registration failed.");
+            return results;
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (results[i] == null) {
+                Item createdItem = chunk.get(i);
+                // 「存在しない」としてキャッシュされている可能性があるので削除
+                itemCache.evict(createdItem.getId());
+                eventPublisher.publishEvent(ItemChangedEvent.created(createdItem.toBuilder().build()));
+                results[i] = new ItemBatchResult(i, createdItem.getId(), Status.CREATED, null);
+            }
+        }
+        return results;
+    }
+
+    private ItemBatchResult[] updateChunk(List<Item> chunk) {
+        ItemBatchResult[] results = new ItemBatchResult[chunk.size()];
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Item item = chunk.get(i);
+            if (item == null || item.getId() == null) {
+                results[i] = new ItemBatchResult(i, null, Status.INVALID, "ID for update cannot be null.");
+            } else {
+                ids.add(item.getId());
+            }
+        }
+
+        // 書き込み待ちの価格より、この更新を優先する
+        ids.forEach(priceUpdateBuffer::discard);
+        Map<Long, Item> previousItems = new HashMap<>();
+        Map<Long, Item> updatedItems;
+        try {
+            updatedItems = transactionTemplate.execute(status -> {
+                // 対象をIN句1回で読み込み、変更はflush時にまとめてUPDATEされる
+                Map<Long, Item> existingItems = itemRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Item::getId, Function.identity()));
+                existingItems.forEach((id, item) -> previousItems.put(id, item.toBuilder().build()));
+                for (Item item : chunk) {
+                    Item existingItem = item == null ? null : existingItems.get(item.getId());
+                    if (existingItem != null) {
+                        existingItem.setName(item.getName());
+                        existingItem.setPrice(item.getPrice());
+                    }
+                }
+                flushAndClear();
+                return existingItems;
+            });
+        } catch (DataAccessException | TransactionException e) {
+            fillFailed(results, i -> chunk.get(i).getId(), "Database update failed.");
+            return results;
+        }
+        updatedItems.forEach((id, updatedItem) -> eventPublisher.publishEvent(
+                ItemChangedEvent.updated(previousItems.get(id), updatedItem.toBuilder().build())));
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Long id = chunk.get(i).getId();
+            Item updatedItem = updatedItems.get(id);
+            if (updatedItem == null) {
+                results[i] = new ItemBatchResult(i, id, Status.NOT_FOUND, "Item not found with id: " + id);
+            } else {
+                itemCache.put(updatedItem);
+                results[i] = new ItemBatchResult(i, id, Status.UPDATED, null);
+            }
+        }
+        return results;
+    }
+
+    private ItemBatchResult[] deleteChunk(List<Long> chunk) {
+        ItemBatchResult[] results = new ItemBatchResult[chunk.size()];
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (chunk.get(i) == null) {
+                results[i] = new ItemBatchResult(i, null, Status.INVALID, "ID for deletion cannot be null.");
+            } else {
+                ids.add(chunk.get(i));
+            }
+        }
+
+        ids.forEach(priceUpdateBuffer::discard);
+        Map<Long, Item> deletedItems;
+        try {
+            deletedItems = transactionTemplate.execute(status -> {
+                // 存在するものをIN句1回で読み込み（変更前の値として通知する）、DELETE ... WHERE id IN (...) の1文で削除する
+                Map<Long, Item> existingItems = itemRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Item::getId, item -> item.toBuilder().build()));
+                itemRepository.deleteAllByIdInBatch(existingItems.keySet());
+                entityManager.clear();
+                return existingItems;
+            });
+        } catch (DataAccessException | TransactionException e) {
+            fillFailed(results, chunk::get, "Database deletion failed.");
+            return results;
+        } finally {
+            ids.forEach(itemCache::evict);
+        }
+        deletedItems.forEach((id, item) -> eventPublisher.publishEvent(ItemChangedEvent.deleted(id, item)));
+        Set<Long> deletedIds = deletedItems.keySet();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Long id = chunk.get(i);
+            results[i] = deletedIds.contains(id)
+                    ? new ItemBatchResult(i, id, Status.DELETED, null)
+                    : new ItemBatchResult(i, id, Status.NOT_FOUND, "Item not found with id: " + id);
+        }
+        return results;
+    }
+
+    // チャンク内のSQLを送り、永続化コンテキストを空にしてメモリを解放する
+    private void flushAndClear() {
+        itemRepository.flush();
+        entityManager.clear();
+    }
+
+    // 入力チェックを通ったものを全て失敗にする（チャンクはロールバック済み）
+    private static void fillFailed(ItemBatchResult[] results, IntFunction<Long> idOf, String message) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new ItemBatchResult(i, idOf.apply(i), Status.FAILED, message);
+            }
+        }
+    }
+}
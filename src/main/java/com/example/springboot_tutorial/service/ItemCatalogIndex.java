@@ -0,0 +1,209 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * アイテム一覧をメモリ上の列（CatalogSnapshot）で保持する索引
+ * 起動時にDBから全件を読み込み、以降はItemChangedEventの変更後の値を反映する
+ * 変更は行に反映せずに溜め、行の配列を共有したスナップショットの上に重ねて公開する（変更の件数に比例する時間で済む）
+ * 溜まった変更がitem.catalog-index.compact-threshold件を超えたら、別スレッドで行に反映した新しいスナップショットを作って差し替える
+ * 全行のコピーは読み込み・書き込みのスレッドでは行わず、読み込み側はロックを取らない
+ * 一括取り込みの後は全件を読み込み直し、その間はnullを返してDBから読ませる
+ * item.catalog-index.enabled=false（デフォルト）の場合は何も保持せず、常にnullを返す
+ */
+@Slf4j
+@Component
+public class ItemCatalogIndex implements DisposableBean {
+
+    private static final String LOAD_SQL = "SELECT id, name, price, version FROM item ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int compactThreshold;
+
+    // ID → 変更後のアイテム（削除はnull）。まだ行に反映していない変更で、thisで同期して読み書きする
+    private final TreeMap<Long, Item> pendingChanges = new TreeMap<>();
+    // 読み込み直しは1スレッドずつ
+    private final Object reloadLock = new Object();
+    // 変更を行に反映する（1スレッドなので、反映は同時に1つだけ）
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-index-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 行の配列を持つスナップショット（変更を重ねていない）。thisで同期して差し替える
+    private CatalogSnapshot base;
+    private boolean compacting;
+    // 読み込み側に公開する、baseにpendingChangesを重ねたスナップショット
+    private volatile CatalogSnapshot snapshot;
+
+    public ItemCatalogIndex(JdbcTemplate jdbcTemplate,
+                            @Value("${item.catalog-index.enabled:false}") boolean enabled,
+                            @Value("${item.catalog-index.compact-threshold:1024}") int compactThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.compactThreshold = compactThreshold;
+    }
+
+    // 初期データの投入（ApplicationRunner）が終わった後に読み込む
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            reloadQuietly();
+        }
+    }
+
+    @EventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            // 削除は後から届いた更新より優先し、更新は新しいバージョンを残す（IDは再利用されない）
+            Item after = event.after();
+            if (pendingChanges.containsKey(event.id())) {
+                Item pending = pendingChanges.get(event.id());
+                if (pending == null || (after != null && isOlder(after, pending))) {
+                    return;
+                }
+            }
+            pendingChanges.put(event.id(), after);
+            if (base != null) {
+                publish();
+            }
+        }
+    }
+
+    @EventListener
+    public void onItemsImported(ItemsImportedEvent event) {
+        if (enabled) {
+            reloadQuietly();
+        }
+    }
+
+    /**
+     * 現在のスナップショット（届いた変更はすべて重ねてある）
+     * @return 無効な場合と、読み込みが終わっていない場合はnull（呼び出し元はDBから読み込む）
+     */
+    public CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * まだ行に反映していない変更の件数
+     */
+    public synchronized int pendingChanges() {
+        return pendingChanges.size();
+    }
+
+    /**
+     * DBから全件を読み込み直す
+     * 読み込み中に届いた変更は、読み込み後に反映する（既に読み込んだ新しいバージョンは上書きしない）
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                base = null;
+                snapshot = null;
+                pendingChanges.clear();
+            }
+            // Itemを作らずに列の配列へ直接詰める
+            CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(1024);
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                long version = rs.getLong(4);
+                if (rs.wasNull()) {
+                    version = CatalogSnapshot.NO_VERSION;
+                }
+                builder.add(rs.getLong(1), rs.getString(2), rs.getObject(3, Integer.class), version);
+            });
+            CatalogSnapshot loaded = builder.build();
+            synchronized (this) {
+                base = loaded;
+                publish();
+            }
+            log.info("Loaded {} items into the catalog index.", loaded.size());
+        }
+    }
+
+    /**
+     * 索引に載っているアイテム数（読み込み前・無効な場合は0）
+     */
+    public int size() {
+        CatalogSnapshot current = snapshot;
+        return current == null ? 0 : current.size();
+    }
+
+    @Override
+    public void destroy() {
+        compactor.shutdownNow();
+    }
+
+    // thisで同期して呼ぶ。変更を重ねたスナップショットを公開し、溜まりすぎていれば行への反映を始める
+    private void publish() {
+        snapshot = base.withChanges(pendingChanges);
+        if (!compacting && pendingChanges.size() >= compactThreshold) {
+            compacting = true;
+            compactor.execute(this::compact);
+        }
+    }
+
+    // 溜まった変更を行に反映したスナップショットを作り、その間に届いた変更を重ね直して差し替える
+    private void compact() {
+        CatalogSnapshot from;
+        TreeMap<Long, Item> changes;
+        synchronized (this) {
+            from = base;
+            changes = new TreeMap<>(pendingChanges);
+        }
+        CatalogSnapshot compacted = null;
+        try {
+            compacted = from == null ? null : from.apply(changes);
+        } catch (RuntimeException e) {
+            log.warn("Failed to compact the catalog index. Changes stay in the overlay.", e);
+        }
+        synchronized (this) {
+            compacting = false;
+            // 作っている間に読み込み直した場合は捨てる
+            if (compacted == null || base != from) {
+                return;
+            }
+            // 反映した変更のうち、その後に上書きされていないものを除く
+            changes.forEach((id, item) -> {
+                if (pendingChanges.containsKey(id) && pendingChanges.get(id) == item) {
+                    pendingChanges.remove(id);
+                }
+            });
+            base = compacted;
+            publish();
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (DataAccessException e) {
+            // 次の一括取り込み（または再起動）まではDBから読み込む
+            log.warn("Failed to load the catalog index. Reads fall back to the database.", e);
+        }
+    }
+
+    private static boolean isOlder(Item item, Item other) {
+        long version = item.getVersion() != null ? item.getVersion() : CatalogSnapshot.NO_VERSION;
+        long otherVersion = other.getVersion() != null ? other.getVersion() : CatalogSnapshot.NO_VERSION;
+        return version < otherVersion;
+    }
+}
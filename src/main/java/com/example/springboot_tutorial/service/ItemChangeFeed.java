@@ -0,0 +1,128 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * アイテムの変更履歴（直近capacity件を保持するリングバッファ）
+ * 変更ごとに通し番号を振って追記し、購読者はそれぞれ自分が読んだ番号の続きから読む
+ * 追記は配列への書き込みと待機中の購読者への通知だけで、購読者への送信は待たない
+ * 通し番号は起動ごとに1から振り直す
+ */
+@Component
+public class ItemChangeFeed {
+
+    private final ItemChange[] ring;
+    // 追記・読み込みはこのロックで守る（保持時間は配列の読み書きの間だけ）
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long lastSequence;
+
+    public ItemChangeFeed(@Value("${item.change-feed.capacity:10000}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("item.change-feed.capacity must be positive.");
+        }
+        this.ring = new ItemChange[capacity];
+    }
+
+    @EventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        ItemChange.Type type = switch (event.type()) {
+            case CREATED -> ItemChange.Type.CREATED;
+            case UPDATED -> ItemChange.Type.UPDATED;
+            case DELETED -> ItemChange.Type.DELETED;
+        };
+        Item after = event.after() == null ? null : event.after().toBuilder().build();
+        append(type, event.id(), after);
+    }
+
+    // 取り込んだ行ごとの変更は残さないため、購読者には一覧の取得し直しを求める
+    @EventListener
+    public void onItemsImported(ItemsImportedEvent event) {
+        append(ItemChange.Type.RESET, null, null);
+    }
+
+    private void append(ItemChange.Type type, Long id, Item item) {
+        lock.lock();
+        try {
+            long sequence = ++lastSequence;
+            ring[(int) (sequence % ring.length)] = new ItemChange(sequence, type, id, item);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 最後に追記した変更の通し番号（まだなければ0）
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定した番号より後の変更を古い順に最大max件返す
+     * 指定した番号の続きがすでに上書きされている場合（または再起動前の番号の場合）は、
+     * 先頭にRESETを入れ、保持している最も古い変更から返す
+     * @param after 最後に受け取った変更の通し番号
+     * @param max 最大件数
+     */
+    public List<ItemChange> readAfter(long after, int max) {
+        lock.lock();
+        try {
+            List<ItemChange> changes = new ArrayList<>();
+            long oldest = Math.max(1, lastSequence - ring.length + 1);
+            long from = after + 1;
+            if (after > lastSequence) {
+                changes.add(ItemChange.reset(lastSequence));
+                return changes;
+            }
+            if (from < oldest) {
+                changes.add(ItemChange.reset(oldest - 1));
+                from = oldest;
+            }
+            for (long sequence = from; sequence <= lastSequence && changes.size() < max; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定した番号より後の変更が追記されるまで待つ
+     * @return 追記された場合はtrue。タイムアウトした場合はfalse
+     */
+    public boolean awaitAfter(long after, Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            while (lastSequence <= after) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * findByIdのキャッシュミス時の読み込みを、同時に来た他のIDとまとめて1回のIN句で読み込む（DataLoader方式）
+ * 最初に来たスレッドが一定時間（window）待ってから、その間に集まったIDをまとめて読み込み、全員に結果を渡す
+ * 集まったIDが上限（max-batch-size）に達した場合は、待たずにその時点で読み込む
+ * 同じIDの読み込みが進行中の場合は新たに読み込まず、その結果を共有する
+ * 読み込みは呼び出し元のスレッドで行うため、読み込み用のスレッドプールは持たない
+ * 結果は他のスレッドの呼び出しとも共有するため、呼び出し元の振り分け（ReadYourWrites）によらずプライマリから読み込む
+ * 他のスレッドの読み込みを待つのはitem.find-coalescing.timeoutまでで、超えた場合はQueryTimeoutExceptionを投げる
+ * item.find-coalescing.enabled=false の場合は、IDごとにすぐ読み込む
+ */
+@Component
+public class ItemLoadCoalescer {
+
+    private final ItemRepository itemRepository;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutNanos;
+
+    // 以下はthisで同期して読み書きする
+    // ID → 進行中（または待機中）の読み込み
+    private final Map<Long, CompletableFuture<Optional<Item>>> inFlight = new HashMap<>();
+    // まだ読み込みを始めていない、IDを受け付け中のまとまり
+    private Batch open;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public ItemLoadCoalescer(ItemRepository itemRepository,
+                             @Value("${item.find-coalescing.enabled:true}") boolean enabled,
+                             @Value("${item.find-coalescing.window:1ms}") Duration window,
+                             @Value("${item.find-coalescing.max-batch-size:100}") int maxBatchSize,
+                             @Value("${item.find-coalescing.timeout:5s}") Duration timeout) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("item.find-coalescing.max-batch-size must be positive.");
+        }
+        this.itemRepository = itemRepository;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * IDを指定してアイテムを1件読み込む（ItemCacheのloaderとして使う）
+     * @param id アイテムID
+     * @return アイテム（存在しない場合は空）
+     */
+    public Optional<Item> load(Long id) {
+        lookups.increment();
+        if (!enabled) {
+            batches.increment();
+            return ReadYourWrites.onPrimary(() -> itemRepository.findValueById(id));
+        }
+
+        CompletableFuture<Optional<Item>> result;
+        Batch leading = null;
+        Batch full = null;
+        synchronized (this) {
+            result = inFlight.get(id);
+            if (result != null) {
+                shared.increment();
+            } else {
+                result = new CompletableFuture<>();
+                inFlight.put(id, result);
+                if (open == null) {
+                    open = new Batch();
+                    leading = open;
+                }
+                open.ids.put(id, result);
+                if (open.ids.size() >= maxBatchSize) {
+                    full = open;
+                    full.started = true;
+                    open = null;
+                }
+            }
+        }
+
+        if (full != null) {
+            run(full);
+        } else if (leading != null) {
+            // 同時に来た他のIDを待つ（上限に達した場合は、達したスレッドが読み込む）
+            LockSupport.parkNanos(windowNanos);
+            synchronized (this) {
+                if (!leading.started) {
+                    leading.started = true;
+                    if (open == leading) {
+                        open = null;
+                    }
+                    full = leading;
+                }
+            }
+            if (full != null) {
+                run(full);
+            }
+        }
+
+        try {
+            // 同じ結果を受け取った呼び出し同士で、インスタンスを共有しない
+            return result.get(timeoutNanos, TimeUnit.NANOSECONDS).map(item -> item.toBuilder().build());
+        } catch (ExecutionException e) {
+            // 読み込んだスレッドで発生した例外（DataAccessExceptionなど）をそのまま投げる
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Timed out waiting for a coalesced load of item " + id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted while waiting for a coalesced load of item " + id);
+        }
+    }
+
+    /**
+     * 呼び出し数・進行中の読み込みを共有した数・実行した読み込み（SQL）の数
+     */
+    public Stats stats() {
+        return new Stats(lookups.sum(), shared.sum(), batches.sum());
+    }
+
+    private void run(Batch batch) {
+        batches.increment();
+        Map<Long, Item> found = new HashMap<>();
+        Throwable failure = null;
+        try {
+            List<Item> items = ReadYourWrites.onPrimary(() -> itemRepository.findValuesByIdIn(batch.ids.keySet()));
+            for (Item item : items) {
+                found.put(item.getId(), item);
+            }
+        } catch (Throwable e) {
+            // Errorでも待っている呼び出しを残さない（読み込んだスレッドには、自分の結果として投げ直される）
+            failure = e;
+        }
+        finish(batch);
+        if (failure != null) {
+            Throwable cause = failure;
+            batch.ids.values().forEach(result -> result.completeExceptionally(cause));
+        } else {
+            batch.ids.forEach((id, result) -> result.complete(Optional.ofNullable(found.get(id))));
+        }
+    }
+
+    // 結果を渡す前に進行中から外し、以降の呼び出しは新しく読み込むようにする
+    private synchronized void finish(Batch batch) {
+        batch.ids.keySet().forEach(inFlight::remove);
+    }
+
+    private static final class Batch {
+        // ID → 結果を待っている呼び出し
+        private final Map<Long, CompletableFuture<Optional<Item>>> ids = new HashMap<>();
+        private boolean started;
+    }
+
+    public record Stats(long lookups, long shared, long batches) {
+    }
+}
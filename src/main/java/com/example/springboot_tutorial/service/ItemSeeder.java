@@ -0,0 +1,167 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.config.ItemShards;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 起動時にアイテムを一括投入する
+ * 1行ずつのINSERT（data.sql）ではなく、INSERT ... SELECTでDB内で行を生成・読み込む
+ * テーブルが空の場合だけ投入するため、ファイルに保存している場合は再起動しても投入し直さない
+ * シャードを使う場合（ShardingConfig）は、ShardedIdGeneratorで採番し、IDのバケットを持つシャードに投入する
+ */
+@Component
+public class ItemSeeder implements ApplicationRunner {
+
+    // 合成データは1トランザクションでこの件数ずつ投入する（ロールバック用の記録が大きくなりすぎないように）
+    private static final int CHUNK_ROWS = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // シャードを使わない場合はnull
+    private final ItemShards itemShards;
+    private final ShardedIdGenerator idGenerator;
+    private final long rows;
+    private final String csv;
+
+    public ItemSeeder(JdbcTemplate jdbcTemplate,
+                      TransactionTemplate transactionTemplate,
+                      ObjectProvider<ItemShards> itemShards,
+                      ObjectProvider<ShardedIdGenerator> idGenerator,
+                      @Value("${item.seed.rows:0}") long rows,
+                      @Value("${item.seed.csv:}") String csv) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.itemShards = itemShards.getIfAvailable();
+        this.idGenerator = idGenerator.getIfAvailable();
+        this.rows = rows;
+        this.csv = csv;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if ((rows <= 0 && csv.isBlank()) || !isEmpty()) {
+            return;
+        }
+        if (!csv.isBlank()) {
+            seedFromCsv(csv);
+        } else {
+            seedSynthetic(rows);
+        }
+    }
+
+    /**
+     * IDが続きの番号（シャードを使う場合は採番したID）で、名前が「item-ID」の合成データを投入する
+     * @param count 投入する件数
+     * @return 投入した件数
+     */
+    public long seedSynthetic(long count) {
+        if (itemShards != null) {
+            for (long from = 0; from < count; from += CHUNK_ROWS) {
+                int chunk = (int) Math.min(CHUNK_ROWS, count - from);
+                List<Object[]> chunkRows = new ArrayList<>(chunk);
+                for (int i = 0; i < chunk; i++) {
+                    long id = idGenerator.next();
+                    chunkRows.add(new Object[]{id, "item-" + id, (int) (id % 10000)});
+                }
+                insertIntoShards(chunkRows);
+            }
+            return count;
+        }
+        long firstId = maxId() + 1;
+        for (long from = 0; from < count; from += CHUNK_ROWS) {
+            long start = firstId + from;
+            long end = firstId + Math.min(from + CHUNK_ROWS, count) - 1;
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT INTO item (id, name, price, version) "
+                            + "SELECT X, CONCAT('item-', X), MOD(X, 10000), 0 FROM SYSTEM_RANGE(?, ?)",
+                    start, end));
+        }
+        restartSequence();
+        return count;
+    }
+
+    /**
+     * CSV（ヘッダ行あり、name,priceの2列、UTF-8）を1文で読み込んで投入する
+     * IDは既存の最大IDの続きから振る（シャードを使う場合は、1台目のシャードで読み込み、採番したIDで振り分ける）
+     * @param path CSVファイルのパス
+     * @return 投入した件数
+     */
+    public long seedFromCsv(String path) {
+        if (itemShards != null) {
+            long inserted = 0;
+            List<Object[]> chunkRows = new ArrayList<>();
+            try (Stream<Object[]> csvRows = itemShards.get(0).jdbc().queryForStream(
+                    "SELECT name, CAST(price AS INTEGER) FROM CSVREAD(?, NULL, 'charset=UTF-8')",
+                    (rs, rowNum) -> new Object[]{idGenerator.next(), rs.getString(1), rs.getObject(2, Integer.class)},
+                    path)) {
+                for (Object[] row : (Iterable<Object[]>) csvRows::iterator) {
+                    chunkRows.add(row);
+                    if (chunkRows.size() == CHUNK_ROWS) {
+                        inserted += insertIntoShards(chunkRows);
+                        chunkRows = new ArrayList<>();
+                    }
+                }
+            }
+            return inserted + insertIntoShards(chunkRows);
+        }
+        long firstId = maxId() + 1;
+        Integer inserted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                "INSERT INTO item (id, name, price, version) "
+                        + "SELECT ? + ROWNUM() - 1, name, CAST(price AS INTEGER), 0 "
+                        + "FROM CSVREAD(?, NULL, 'charset=UTF-8')",
+                firstId, path));
+        restartSequence();
+        return Objects.requireNonNullElse(inserted, 0);
+    }
+
+    private boolean isEmpty() {
+        if (itemShards != null) {
+            return itemShards.all().stream().noneMatch(shard -> hasItems(shard.jdbc()));
+        }
+        return !hasItems(jdbcTemplate);
+    }
+
+    private static boolean hasItems(JdbcTemplate jdbc) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM item)", Boolean.class));
+    }
+
+    // 行（id, name, price）をバケットごとに分け、バケットを持つシャードにまとめて投入する
+    // （投入中はそのバケットが移動しないよう、ItemShards.routeの中で行う）
+    private long insertIntoShards(List<Object[]> items) {
+        Map<Integer, List<Object[]>> byBucket = new HashMap<>();
+        for (Object[] item : items) {
+            long id = (Long) item[0];
+            int bucket = ShardedIdGenerator.bucketOf(id);
+            byBucket.computeIfAbsent(bucket, key -> new ArrayList<>())
+                    .add(new Object[]{id, item[1], item[2], 0L, bucket});
+        }
+        byBucket.values().forEach(bucketRows -> itemShards.route((Long) bucketRows.get(0)[0],
+                shard -> shard.jdbc().batchUpdate(
+                        "INSERT INTO item (id, name, price, version, bucket) VALUES (?, ?, ?, ?, ?)", bucketRows)));
+        return items.size();
+    }
+
+    private long maxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM item", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    // 投入したIDと重ならないよう、シーケンスを最大IDの後ろから再開させる
+    // （IDは50件ずつまとめて確保されるため、確保済みの範囲も飛ばす）
+    private void restartSequence() {
+        jdbcTemplate.execute("ALTER SEQUENCE item_seq RESTART WITH " + (maxId() + 51));
+    }
+}
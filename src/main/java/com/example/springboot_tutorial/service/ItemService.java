@@ -1,17 +1,34 @@
 package com.example.springboot_tutorial.service;
 
 import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ItemService {
 
     List<Item> findAll();
 
+    ItemPage findPage(Long afterId, int size);
+
+    void streamAll(Consumer<Item> action);
+
+    List<ItemSummary> search(ItemSearchQuery query);
+
     Item findById(Long id);
 
+    List<Item> findByIds(List<Long> ids);
+
     Item createItem(Item item);
 
     Item updateItem(Long id, Item newItemData);
 
+    Item updateItem(Long id, Item newItemData, Long expectedVersion);
+
+    Item updatePrice(Long id, Integer price);
+
     void deleteItem(Long id);
 }
@@ -1,42 +1,185 @@
 package com.example.springboot_tutorial.service;
 
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.exception.InvalidRequestException;
 import com.example.springboot_tutorial.exception.ResourceNotFoundException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
 import com.example.springboot_tutorial.model.Item; // Itemクラスを使うため
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
 import com.example.springboot_tutorial.repository.ItemRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;  // @serviceのアノテーション使用時に必要
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;  // コレクションフレームワークのListを使うため
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+@Timed(value = "item.service", histogram = true, percentiles = {0.5, 0.95, 0.99})  // メソッドごとの処理時間を計測
 @Service  // ビジネスロジックを担当するServiceであることを明示
 public class ItemServiceImpl implements ItemService{
 
+    // 1ページで返すアイテム数の上限
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // 価格だけの更新で、バージョンの競合時にやり直す回数の上限
+    private static final int MAX_PRICE_UPDATE_ATTEMPTS = 3;
+
     private final ItemRepository itemRepository;
+    private final ItemCache itemCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PriceUpdateBuffer priceUpdateBuffer;
+    private final ItemCatalogIndex catalogIndex;
+    private final ItemLoadCoalescer itemLoadCoalescer;
+    private final TransactionTemplate transactionTemplate;
 
     // コンストラクタでItemRepositoryを受け取る（DI:依存性の注入）
     // ItemServiceは自分でnewせず、ItemRepositoryを引数とすることで、ItemRepositoryが受け取ったものを受け取る
-    public ItemServiceImpl(ItemRepository itemRepository) {
+    public ItemServiceImpl(ItemRepository itemRepository, ItemCache itemCache,
+                           ApplicationEventPublisher eventPublisher, PriceUpdateBuffer priceUpdateBuffer,
+                           ItemCatalogIndex catalogIndex, ItemLoadCoalescer itemLoadCoalescer,
+                           TransactionTemplate transactionTemplate) {
         this.itemRepository = itemRepository;
+        this.itemCache = itemCache;
+        this.eventPublisher = eventPublisher;
+        this.priceUpdateBuffer = priceUpdateBuffer;
+        this.catalogIndex = catalogIndex;
+        this.itemLoadCoalescer = itemLoadCoalescer;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
      * DBからアイテム一覧を取得
+     * 読み込み専用のトランザクションで、エンティティを介さずに読み込む
+     * カタログ索引（ItemCatalogIndex）が有効な場合はDBにアクセスせず、メモリ上の列から返す
+     * （索引を使う時にコネクションを取得しないよう、トランザクションはリポジトリで開始する）
      * GET /items
      */
     @Override
     public List<Item> findAll() {
-        return itemRepository.findAll();
+        CatalogSnapshot catalog = catalogIndex.snapshot();
+        return withPendingPrices(catalog != null ? catalog.items() : itemRepository.findAllValues());
+    }
+
+    /**
+     * アイテム一覧をID順にページ単位で取得（キーセットページネーション）
+     * カタログ索引が有効な場合は、メモリ上の列を二分探索して返す
+     * GET /items/page
+     * @param afterId 前ページの最後のアイテムID。nullの場合は先頭から取得
+     * @param size 1ページの件数（1〜MAX_PAGE_SIZEに丸める）
+     * @return 取得したアイテムと次ページのカーソル
+     */
+    @Override
+    public ItemPage findPage(Long afterId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        long after = afterId == null ? 0L : afterId;
+        CatalogSnapshot catalog = catalogIndex.snapshot();
+        List<Item> items = catalog != null
+                ? catalog.itemsAfter(after, pageSize)
+                : itemRepository.findValuesAfter(after, Limit.of(pageSize));
+        // 件数がページサイズに満たなければ最終ページ
+        Long nextCursor = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new ItemPage(withPendingPrices(items), nextCursor);
+    }
+
+    /**
+     * 全アイテムをID順に1件ずつ読み込み、actionに渡す
+     * エンティティとして読み込まず、永続化コンテキストに溜まらないため、件数に関わらずメモリ使用量は一定
+     * 書き込み待ちの価格は、読み込んだアイテムに1件ずつ反映する
+     * GET /items/stream
+     * @param action 読み込んだアイテムごとに実行する処理
+     */
+    @Override
+    @Transactional(readOnly = true)  // Streamで結果を読むにはトランザクションが必要
+    public void streamAll(Consumer<Item> action) {
+        try (Stream<Item> items = itemRepository.streamAllValues()) {
+            items.map(this::withPendingPrice).forEach(action);
+        }
+    }
+
+    /**
+     * 名前・価格帯で絞り込み、指定した列で並べたアイテムを取得
+     * エンティティは生成せず、id・name・priceの3列だけを読み込む
+     * 名前を条件に使わない検索は、カタログ索引が有効ならメモリ上の列で処理する
+     * 書き込み待ちの価格は、絞り込み・並び替えに使えるよう検索の前に書き込んでおく
+     * GET /items/search
+     * @param query 検索条件（件数は1〜MAX_PAGE_SIZEに丸める）
+     * @return 条件に一致したアイテム
+     */
+    @Override
+    public List<ItemSummary> search(ItemSearchQuery query) {
+        ItemSearchQuery normalized = normalize(query);
+        writePendingPrices();
+        CatalogSnapshot catalog = catalogIndex.snapshot();
+        if (catalog != null && CatalogSnapshot.supports(normalized)) {
+            return catalog.search(normalized);
+        }
+        return itemRepository.search(normalized);
+    }
+
+    // 検索条件を確認し、省略された条件を既定値で埋める（ShardedItemServiceと共通）
+    static ItemSearchQuery normalize(ItemSearchQuery query) {
+        if (query.minPrice() != null && query.maxPrice() != null && query.minPrice() > query.maxPrice()) {
+            throw new InvalidRequestException("minPrice must not be greater than maxPrice.");
+        }
+        return new ItemSearchQuery(
+                query.name(),
+                query.nameMatch() != null ? query.nameMatch() : ItemSearchQuery.NameMatch.PREFIX,
+                query.minPrice(),
+                query.maxPrice(),
+                query.sortBy() != null ? query.sortBy() : ItemSearchQuery.SortKey.ID,
+                query.descending(),
+                Math.min(Math.max(query.limit(), 1), MAX_PAGE_SIZE));
     }
 
     /**
      * IDを指定してアイテムを1件取得
-     * なければ例外をスロー
+     * キャッシュにあればDBにアクセスしない。なければ例外をスロー
+     * キャッシュにヒットした時にコネクションを取得しないよう、ここではトランザクションを開始しない
+     * （キャッシュにない時の読み込みは、リポジトリの読み込み専用トランザクションで行う）
+     * キャッシュにない場合は、同時に来た他のIDの読み込みとまとめて1回のSQLで読み込む（ItemLoadCoalescer）
+     * キャッシュに入れた値は他のクライアントにも返すため、レプリカではなくプライマリから読み込む
      * GET /items/{id}
      */
     @Override
     public Item findById(Long id) {
-        return itemRepository.findById(id)
+        Item item = itemCache.get(id, key -> ReadYourWrites.onPrimary(() -> itemLoadCoalescer.load(key)))
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
+        return withPendingPrice(item);
+    }
+
+    /**
+     * IDを複数指定してアイテムを取得
+     * キャッシュにないIDだけを、IN句の1回のSQLでまとめて読み込む
+     * （findByIdと同じく、キャッシュに入れるためプライマリから読み込む）
+     * GET /items?ids=1,2,3
+     * @param ids アイテムID（最大MAX_PAGE_SIZE件）
+     * @return 指定した順のアイテム（重複したIDは1件、存在しないIDは含まない）
+     */
+    @Override
+    public List<Item> findByIds(List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Too many ids. Maximum is " + MAX_PAGE_SIZE);
+        }
+        Map<Long, Item> found = itemCache.getAll(ids,
+                missing -> ReadYourWrites.onPrimary(() -> itemRepository.findValuesByIdIn(missing)));
+        return ids.stream()
+                .distinct()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .map(this::withPendingPrice)
+                .toList();
     }
 
     /**
@@ -50,7 +193,11 @@ public class ItemServiceImpl implements ItemService{
             throw new IllegalArgumentException("A new item cannot have an ID");
         }
         try {
-            return itemRepository.save(item); // saveはIDがなければINSERTを実行する
+            Item savedItem = itemRepository.save(item); // saveはIDがなければINSERTを実行する
+            // 「存在しない」としてキャッシュされている可能性があるので削除
+            itemCache.evict(savedItem.getId());
+            eventPublisher.publishEvent(ItemChangedEvent.created(savedItem.toBuilder().build()));
+            return savedItem;
         } catch (DataAccessException e) {
             throw new RuntimeException("Database registration failed.", e);
         }
@@ -58,6 +205,8 @@ public class ItemServiceImpl implements ItemService{
 
     /**
      * IDを指定してアイテムを更新する
+     * トランザクション内で読み込んだエンティティを書き換えるため、SQLはSELECTとUPDATEの1回ずつ
+     * 書き込み待ちの価格はトランザクションを始める前に書き込む（この更新と一緒にロールバックされないように）
      * @param id 更新対象のアイテムID
      * @param newItemData 更新後のアイテム情報
      * @return 更新されたアイテム情報
@@ -67,34 +216,158 @@ public class ItemServiceImpl implements ItemService{
         if (id == null) {
             throw new IllegalArgumentException("ID for update cannot be null.");
         }
-        // 存在チェックとオブジェクトの取得
-        Item existingItem = findById(id);
-        // 情報を上書き
-        existingItem.setName(newItemData.getName());
-        existingItem.setPrice(newItemData.getPrice());
+        // 書き込み待ちの価格を先に書き込み、その後にこの更新を行う
+        priceUpdateBuffer.flush(id);
+        Updated updated;
+        try {
+            updated = transactionTemplate.execute(status -> {
+                // 存在チェックとオブジェクトの取得（キャッシュのコピーではなく、管理状態のエンティティを使う）
+                Item existingItem = itemRepository.findById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
+                Item before = existingItem.toBuilder().build();
+                // 情報を上書き
+                existingItem.setName(newItemData.getName());
+                existingItem.setPrice(newItemData.getPrice());
+                return new Updated(before, itemRepository.save(existingItem));
+            });
+        } catch (DataAccessException | TransactionException e) {
+            itemCache.evict(id);
+            throw new RuntimeException("Database update failed.", e);
+        }
+        // コミット後にキャッシュを更新後の値に置き換える
+        itemCache.put(updated.after());
+        eventPublisher.publishEvent(ItemChangedEvent.updated(updated.before(), updated.after().toBuilder().build()));
+        return updated.after();
+    }
 
+    /**
+     * バージョンが一致する場合だけアイテムを更新する（楽観的ロック）
+     * 事前のSELECTを行わず、UPDATE ... WHERE id=? AND version=? の1文で更新する
+     * 変更の通知に付ける更新前の値は、キャッシュにあるバージョンが一致する値を使う（バージョンが同じなら行の内容も同じ）
+     * キャッシュにない場合は更新前の値なしで通知し、集計（ItemStatistics）はDBから集計し直す
+     * @param id 更新対象のアイテムID
+     * @param newItemData 更新後のアイテム情報
+     * @param expectedVersion クライアントが最後に取得したバージョン（If-Match）
+     * @return 更新されたアイテム情報（バージョンは1増える）
+     */
+    @Override
+    public Item updateItem(Long id, Item newItemData, Long expectedVersion) {
+        if (id == null || expectedVersion == null) {
+            throw new IllegalArgumentException("ID and version for update cannot be null.");
+        }
+        // クライアントが受け取ったバージョン（書き込み待ちの価格を反映したもの）とDBのバージョンを揃える
+        priceUpdateBuffer.flush(id);
+        Item previousItem = itemCache.peek(id)
+                .filter(cached -> expectedVersion.equals(cached.getVersion()))
+                .orElse(null);
+        int updatedRows;
         try {
-            // 更新を実行
-            return itemRepository.save(existingItem);
-        } catch (DataAccessException e){
+            updatedRows = itemRepository.updateIfVersionMatches(
+                    id, expectedVersion, newItemData.getName(), newItemData.getPrice());
+        } catch (DataAccessException e) {
+            itemCache.evict(id);
             throw new RuntimeException("Database update failed.", e);
         }
+        if (updatedRows == 0) {
+            // 更新できなかった時だけ、存在しないのかバージョンが古いのかを確認する
+            if (!itemRepository.existsById(id)) {
+                throw new ResourceNotFoundException("Item not found with id: " + id);
+            }
+            throw new VersionConflictException("Item has been modified by another request. id: " + id);
+        }
+
+        Item updatedItem = Item.builder()
+                .id(id)
+                .name(newItemData.getName())
+                .price(newItemData.getPrice())
+                .version(expectedVersion + 1)
+                .build();
+        itemCache.put(updatedItem);
+        eventPublisher.publishEvent(ItemChangedEvent.updated(previousItem, updatedItem.toBuilder().build()));
+        return updatedItem;
+    }
+
+    /**
+     * IDを指定してアイテムの価格だけを更新する
+     * write-behindが有効な場合はバッファに入れるだけで、DBへの書き込みはまとめて後から行う
+     * 無効な場合は、キャッシュのバージョンを使ったUPDATE 1文で更新する
+     * @param id 更新対象のアイテムID
+     * @param price 更新後の価格
+     * @return 更新後のアイテム情報（write-behindの場合も、バージョンは1つ進んだものを返す）
+     */
+    @Override
+    public Item updatePrice(Long id, Integer price) {
+        if (id == null || price == null) {
+            throw new IllegalArgumentException("ID and price for update cannot be null.");
+        }
+        Item item = findById(id);  // 存在チェック
+        Item buffered = priceUpdateBuffer.offer(item, price);
+        if (buffered != null) {
+            return buffered;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return updateItem(id, item.toBuilder().price(price).build(), item.getVersion());
+            } catch (VersionConflictException e) {
+                // キャッシュが古かった場合はDBから読み直してやり直す
+                if (attempt == MAX_PRICE_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                itemCache.evict(id);
+                item = findById(id);
+            }
+        }
     }
 
     /**
      * IDを指定してアイテムを削除する
+     * キャッシュの値はバージョンが古い場合があるため、削除はIDだけを条件に行い、キャッシュの値は変更の通知にだけ使う
      * @param id 削除対象のアイテムID
      */
     @Override
     public void deleteItem(Long id) {
-        // 存在チェックとオブジェクトの取得
+        priceUpdateBuffer.discard(id);
+        // 存在チェックと、通知に付ける削除前の値の取得
         Item itemToDelete = findById(id);
 
         try {
-            // 削除を実行
-            itemRepository.delete(itemToDelete);
+            // 削除を実行（他のリクエストが先に削除していた場合は404）
+            if (itemRepository.deleteItemById(id) == 0) {
+                throw new ResourceNotFoundException("Item not found with id: " + id);
+            }
+            eventPublisher.publishEvent(ItemChangedEvent.deleted(id, itemToDelete));
         } catch (DataAccessException e) {
             throw new RuntimeException("Database deletion failed.", e);
+        } finally {
+            itemCache.evict(id);
         }
     }
+
+    // 書き込み待ちの価格とバージョンを反映したコピーを返す（エンティティ自体は書き換えない）
+    // 読み込んだ値のバージョンが書き込み後のバージョンに達していれば、既に書き込まれている
+    private Item withPendingPrice(Item item) {
+        PriceUpdateBuffer.PendingPrice pending = priceUpdateBuffer.pendingPrice(item.getId());
+        if (pending == null || (item.getVersion() != null && item.getVersion() >= pending.version())) {
+            return item;
+        }
+        return item.toBuilder().price(pending.price()).version(pending.version()).build();
+    }
+
+    private List<Item> withPendingPrices(List<Item> items) {
+        if (!priceUpdateBuffer.hasPending()) {
+            return items;
+        }
+        return items.stream().map(this::withPendingPrice).toList();
+    }
+
+    // 書き込み待ちの価格があれば書き込む（DBの価格で絞り込み・並び替えをする検索で、古い価格を使わないように）
+    private void writePendingPrices() {
+        if (priceUpdateBuffer.hasPending()) {
+            priceUpdateBuffer.flush();
+        }
+    }
+
+    // 更新前と更新後のアイテム（変更の通知用）
+    private record Updated(Item before, Item after) {
+    }
 }
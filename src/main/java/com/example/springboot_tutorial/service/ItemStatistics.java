@@ -0,0 +1,280 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * アイテムの価格の集計（件数・合計・最小・最大・平均・価格帯ごとの件数）
+ * 起動時にDBから1回集計し、以降はItemChangedEventの変更前後の値から差分で更新する
+ * 最小値・最大値の価格が削除・変更された場合だけ、インデックスを使ってMIN/MAXを問い合わせ直す
+ * DBに書き込まれた値を集計するため、write-behindで書き込み待ちの価格は書き込み後に反映される
+ */
+@Slf4j
+@Component
+public class ItemStatistics {
+
+    private static final String EXTREMES_SQL = "SELECT MIN(price), MAX(price) FROM item";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int bucketWidth;
+    private final String bucketsSql;
+    // DBへの集計・MIN/MAXの問い合わせを1つずつ行うためのロック
+    // 問い合わせ中はthisを持たないため、変更の通知（リスナー）を待たせない
+    private final Object rebuildLock = new Object();
+
+    // 以下の集計値はthisで同期して読み書きする
+    private long count;
+    private long pricedCount;
+    private long sum;
+    private Integer min;
+    private Integer max;
+    // 価格帯の番号（価格 / bucketWidth の切り捨て） → 件数
+    private final TreeMap<Long, Long> bucketCounts = new TreeMap<>();
+    // 最小値・最大値をDBから読み直す必要がある
+    private boolean extremesStale;
+    // 変更前の値が分からない変更や一括取り込みがあり、全体を集計し直す必要がある
+    private boolean stale = true;
+    // 変更を受け取るたびに増える。問い合わせ中に変更があったかどうかの判定に使う
+    private long generation;
+    // 前回作った集計結果。変更があるまで使い回す
+    private volatile ItemStats snapshot;
+
+    public ItemStatistics(JdbcTemplate jdbcTemplate,
+                          @Value("${item.stats.bucket-width:1000}") int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("item.stats.bucket-width must be positive.");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.bucketWidth = bucketWidth;
+        // 価格帯ごとに件数・合計・最小・最大をまとめ、全体の集計もテーブルの1回の走査で済ませる
+        // 価格がNULLの行は価格帯がNULLのグループになる
+        String bucket = "FLOOR(price / " + bucketWidth + ".0)";
+        this.bucketsSql = "SELECT " + bucket + ", COUNT(*), SUM(price), MIN(price), MAX(price) FROM item GROUP BY " + bucket;
+    }
+
+    // 初期データの投入（ApplicationRunner）が終わった後に集計する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            // 最初の取得時にもう一度集計する
+            log.warn("Failed to build item statistics at startup.", e);
+        }
+    }
+
+    @EventListener
+    public synchronized void onItemChanged(ItemChangedEvent event) {
+        generation++;
+        snapshot = null;
+        if (stale) {
+            return;  // 集計し直す時にDBから読むため、差分は捨てる
+        }
+        switch (event.type()) {
+            case CREATED -> add(event.after());
+            case UPDATED, DELETED -> {
+                if (event.before() == null) {
+                    stale = true;
+                    return;
+                }
+                remove(event.before());
+                if (event.after() != null) {
+                    add(event.after());
+                }
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onItemsImported(ItemsImportedEvent event) {
+        generation++;
+        snapshot = null;
+        stale = true;
+    }
+
+    /**
+     * 現在の集計結果
+     * 変更がなければ前回の結果をそのまま返し、DBにはアクセスしない
+     * 集計し直している間に変更があった場合は、DBから読んだ結果を返すが使い回さず、次の取得時にもう一度集計する
+     */
+    public ItemStats stats() {
+        ItemStats current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            long startedAt;
+            boolean fullRebuild;
+            synchronized (this) {
+                if (snapshot != null) {
+                    return snapshot;
+                }
+                if (!stale && !extremesStale) {
+                    snapshot = toStats();
+                    return snapshot;
+                }
+                startedAt = generation;
+                fullRebuild = stale;
+            }
+            if (fullRebuild) {
+                Totals totals = queryTotals();
+                synchronized (this) {
+                    if (install(totals, startedAt)) {
+                        snapshot = toStats();
+                        return snapshot;
+                    }
+                }
+                return totals.toStats(bucketWidth);
+            }
+            Integer[] extremes = queryExtremes();
+            synchronized (this) {
+                if (generation == startedAt) {
+                    min = extremes[0];
+                    max = extremes[1];
+                    extremesStale = false;
+                    snapshot = toStats();
+                    return snapshot;
+                }
+                // 件数・合計は変更を反映済みのものを使い、最小値・最大値だけ読んだ値で補う
+                return new Totals(count, pricedCount, sum, extremes[0], extremes[1], bucketCounts).toStats(bucketWidth);
+            }
+        }
+    }
+
+    /**
+     * DBの全件から集計し直す
+     * 集計中に変更があった場合は結果を捨て、それまでの集計値（と必要なら次の取得時の集計）を使う
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long startedAt;
+            synchronized (this) {
+                startedAt = generation;
+            }
+            Totals totals = queryTotals();
+            synchronized (this) {
+                install(totals, startedAt);
+            }
+        }
+    }
+
+    // thisで同期して呼ぶ。問い合わせを始めてから変更がなかった場合だけ、集計値を入れ替える
+    private boolean install(Totals totals, long startedAt) {
+        if (generation != startedAt) {
+            return false;
+        }
+        count = totals.count();
+        pricedCount = totals.pricedCount();
+        sum = totals.sum();
+        min = totals.min();
+        max = totals.max();
+        bucketCounts.clear();
+        bucketCounts.putAll(totals.bucketCounts());
+        extremesStale = false;
+        stale = false;
+        snapshot = null;
+        return true;
+    }
+
+    private Totals queryTotals() {
+        long newCount = 0;
+        long newPricedCount = 0;
+        long newSum = 0;
+        Integer newMin = null;
+        Integer newMax = null;
+        TreeMap<Long, Long> newBucketCounts = new TreeMap<>();
+        for (Object[] row : jdbcTemplate.query(bucketsSql, (rs, rowNum) -> new Object[]{
+                rs.getObject(1, Long.class), rs.getLong(2), rs.getLong(3),
+                rs.getObject(4, Integer.class), rs.getObject(5, Integer.class)})) {
+            long rows = (Long) row[1];
+            newCount += rows;
+            if (row[0] == null) {
+                continue;  // 価格がNULLの行
+            }
+            newPricedCount += rows;
+            newSum += (Long) row[2];
+            newBucketCounts.put((Long) row[0], rows);
+            newMin = newMin == null ? (Integer) row[3] : Math.min(newMin, (Integer) row[3]);
+            newMax = newMax == null ? (Integer) row[4] : Math.max(newMax, (Integer) row[4]);
+        }
+        return new Totals(newCount, newPricedCount, newSum, newMin, newMax, newBucketCounts);
+    }
+
+    private void add(Item item) {
+        count++;
+        Integer price = item.getPrice();
+        if (price == null) {
+            return;
+        }
+        pricedCount++;
+        sum += price;
+        bucketCounts.merge(bucketOf(price), 1L, Long::sum);
+        if (!extremesStale) {
+            min = min == null ? price : Math.min(min, price);
+            max = max == null ? price : Math.max(max, price);
+        }
+    }
+
+    private void remove(Item item) {
+        count--;
+        Integer price = item.getPrice();
+        if (price == null) {
+            return;
+        }
+        pricedCount--;
+        sum -= price;
+        bucketCounts.computeIfPresent(bucketOf(price), (bucket, rows) -> rows == 1 ? null : rows - 1);
+        if (pricedCount == 0) {
+            min = null;
+            max = null;
+            extremesStale = false;
+        } else if (price.equals(min) || price.equals(max)) {
+            // 同じ価格のアイテムが他にもあるか分からないため、次の取得時に読み直す
+            extremesStale = true;
+        }
+    }
+
+    // idx_item_priceを使うため、テーブル全体は走査しない
+    private Integer[] queryExtremes() {
+        Integer[] extremes = new Integer[2];
+        jdbcTemplate.query(EXTREMES_SQL, rs -> {
+            extremes[0] = rs.getObject(1, Integer.class);
+            extremes[1] = rs.getObject(2, Integer.class);
+        });
+        return extremes;
+    }
+
+    private long bucketOf(int price) {
+        return Math.floorDiv(price, bucketWidth);
+    }
+
+    private ItemStats toStats() {
+        return new Totals(count, pricedCount, sum, min, max, bucketCounts).toStats(bucketWidth);
+    }
+
+    // DBから読んだ集計値、または現在の集計値
+    private record Totals(long count, long pricedCount, long sum, Integer min, Integer max,
+                          TreeMap<Long, Long> bucketCounts) {
+
+        ItemStats toStats(int bucketWidth) {
+            List<ItemStats.Bucket> buckets = new ArrayList<>(bucketCounts.size());
+            bucketCounts.forEach((bucket, rows) -> buckets.add(
+                    new ItemStats.Bucket(bucket * bucketWidth, (bucket + 1) * bucketWidth, rows)));
+            Double average = pricedCount == 0 ? null : (double) sum / pricedCount;
+            return new ItemStats(count, pricedCount, sum, min, max, average, bucketWidth, List.copyOf(buckets));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.springboot_tutorial.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface ItemTransferService {
+
+    long exportTo(OutputStream out) throws IOException;
+
+    long importFrom(InputStream in) throws IOException;
+}
@@ -0,0 +1,211 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * アイテム全件の書き出し・取り込み（gzip圧縮したNDJSON、1行1アイテム）
+ * エンティティを介さずJDBCの結果セットとJSONのストリームを直接つなぐため、件数に関わらずメモリ使用量は一定
+ * 行の形式は GET /items/{id} のJSONと同じ（id・name・price・version）
+ */
+@Service
+public class ItemTransferServiceImpl implements ItemTransferService {
+
+    private static final String SELECT_SQL = "SELECT id, name, price, version FROM item ORDER BY id";
+    private static final String MERGE_SQL = "MERGE INTO item (id, name, price, version) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+    private final ItemCache itemCache;
+    private final PriceUpdateBuffer priceUpdateBuffer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public ItemTransferServiceImpl(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ObjectMapper objectMapper,
+                                   ItemCache itemCache,
+                                   PriceUpdateBuffer priceUpdateBuffer,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${item.import.chunk-size:10000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jsonFactory = objectMapper.getFactory();
+        this.itemCache = itemCache;
+        this.priceUpdateBuffer = priceUpdateBuffer;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 全アイテムをID順にgzip圧縮したNDJSONで書き出す
+     * SELECT 1文で読むため、書き出し中に変更されても結果は1時点のものになる
+     * @param out 書き出し先（閉じない）
+     * @return 書き出した件数
+     */
+    @Override
+    public long exportTo(OutputStream out) throws IOException {
+        // 書き込み待ちの価格も書き出されるよう先に書き込む
+        priceUpdateBuffer.flush();
+        long[] count = new long[1];
+        // 圧縮率より速度を優先する（圧縮がボトルネックにならないように）
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        try (JsonGenerator generator = jsonFactory.createGenerator(gzip)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            RowCallbackHandler writeRow = rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", rs.getLong(1));
+                    generator.writeStringField("name", rs.getString(2));
+                    writeNullableNumber(generator, "price", rs.getInt(3), rs.wasNull());
+                    writeNullableNumber(generator, "version", rs.getLong(4), rs.wasNull());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            };
+            jdbcTemplate.query(con -> {
+                PreparedStatement statement = con.prepareStatement(SELECT_SQL);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, writeRow);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // gzipの末尾を書き出す（書き出し先は呼び出し元が閉じる）
+        gzip.finish();
+        return count[0];
+    }
+
+    /**
+     * gzip圧縮した（または圧縮していない）NDJSONを読み込み、IDごとに登録・上書きする
+     * chunkSize件ごとに1トランザクション・1回のJDBCバッチで送るため、途中で失敗してもそれまでのチャンクはコミット済み
+     * 行ごとの変更通知は送らず、最後にキャッシュを空にしてItemsImportedEventを送る
+     * @param in 読み込み元（閉じない）
+     * @return 取り込んだ件数
+     * @throws JsonParseException 不正な行があった場合
+     */
+    @Override
+    public long importFrom(InputStream in) throws IOException {
+        // 書き込み待ちの価格が、取り込んだ値を後から上書きしないよう先に書き込む
+        priceUpdateBuffer.flush();
+        long imported = 0;
+        try (JsonParser parser = jsonFactory.createParser(decompressIfGzip(in))) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            List<Object[]> chunk = new ArrayList<>(chunkSize);
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Each line must be a JSON object.");
+                }
+                chunk.add(readRow(parser));
+                if (chunk.size() == chunkSize) {
+                    imported += writeChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            imported += writeChunk(chunk);
+        } finally {
+            if (imported > 0) {
+                restartSequence();
+                itemCache.clear();
+                eventPublisher.publishEvent(new ItemsImportedEvent(imported));
+            }
+        }
+        return imported;
+    }
+
+    // 1行分のオブジェクトを読み、MERGEのパラメータ（id, name, price, version）にする
+    private static Object[] readRow(JsonParser parser) throws IOException {
+        Long id = null;
+        String name = null;
+        Integer price = null;
+        Long version = 0L;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            boolean isNull = value == JsonToken.VALUE_NULL;
+            switch (field) {
+                case "id" -> id = isNull ? null : parser.getLongValue();
+                case "name" -> name = isNull ? null : parser.getText();
+                case "price" -> price = isNull ? null : parser.getIntValue();
+                case "version" -> version = isNull ? 0L : parser.getLongValue();
+                default -> parser.skipChildren();  // 知らない項目は読み飛ばす
+            }
+        }
+        if (id == null) {
+            throw new JsonParseException(parser, "Item id is required.");
+        }
+        return new Object[]{id, name, price, version};
+    }
+
+    private int writeChunk(List<Object[]> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MERGE_SQL, chunk));
+        return chunk.size();
+    }
+
+    // 先頭2バイトがgzipのマジックナンバーなら展開する
+    private static InputStream decompressIfGzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    private static void writeNullableNumber(JsonGenerator generator, String field, long value, boolean isNull)
+            throws IOException {
+        if (isNull) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeNumberField(field, value);
+        }
+    }
+
+    // 取り込んだIDと重ならないよう、シーケンスを最大IDの後ろから再開させる
+    private void restartSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM item", Long.class);
+        jdbcTemplate.execute("ALTER SEQUENCE item_seq RESTART WITH " + ((maxId == null ? 0 : maxId) + 51));
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * 価格更新の書き込みを遅らせてまとめるバッファ（write-behind）
+ * 同じアイテムへの更新は最後の値だけを残し、一定間隔または一定件数ごとにJDBCバッチでUPDATEする
+ * 書き込み前の価格はItemServiceImplの読み込み時に反映されるため、更新直後から新しい価格が返る
+ * バージョンも更新ごとに進めて返し、書き込み時にその値をDBに書く（ETagが書き込みを待たずに変わるように）
+ * item.write-behind.enabled=false（デフォルト）の場合は何も溜めず、更新はすぐにDBへ書き込まれる
+ */
+@Slf4j
+@Component
+public class PriceUpdateBuffer implements SmartLifecycle {
+
+    // 受け付け時に返したバージョンを書く（キャッシュが古く、DBの方が進んでいた場合はDBのバージョンの次にする）
+    private static final String UPDATE_SQL = "UPDATE item SET price = ?, version = GREATEST(version + 1, ?) WHERE id = ?";
+
+    private final ItemRepository itemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ItemCache itemCache;
+    private final CatalogVersion catalogVersion;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int maxSize;
+    private final int flushSize;
+    private final Duration flushInterval;
+
+    // アイテムID → 書き込み待ちの価格と、書き込んだ後のバージョン
+    private final Map<Long, PendingPrice> pending = new ConcurrentHashMap<>();
+    // 停止後にバッファへ入る更新がないよう、offerは読み込みロック、停止への切り替えは書き込みロックを取る
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+    // 書き込みは1スレッドずつ（書き込み中の値を破棄する処理もこれで待たせる）
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile LongConsumer flushTimeRecorder = nanos -> { };
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    public PriceUpdateBuffer(ItemRepository itemRepository,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             ItemCache itemCache,
+                             CatalogVersion catalogVersion,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${item.write-behind.enabled:false}") boolean enabled,
+                             @Value("${item.write-behind.max-size:10000}") int maxSize,
+                             @Value("${item.write-behind.flush-size:500}") int flushSize,
+                             @Value("${item.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this.itemRepository = itemRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // 呼び出し元のトランザクションには参加せず、書き込みごとにコミットしてからキャッシュ・通知を更新する
+        // （呼び出し元がロールバックしても、キャッシュや通知に出た価格がDBから消えないように）
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager(), transactionTemplate);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.itemCache = itemCache;
+        this.catalogVersion = catalogVersion;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * 価格の更新をバッファに入れる
+     * 上限（max-size）に達している場合は、呼び出し元のスレッドで書き込んで空きを作る
+     * 書き込みに失敗して空きができなかった場合はバッファに入れない（DBが止まっている間に溜め続けないように）
+     * @param current 更新前のアイテム（書き込み待ちの価格・バージョンを反映したもの）
+     * @return バッファに入れた場合は更新後のアイテム（バージョンは1つ進む）。無効・停止中・空きがない場合はnull（呼び出し元ですぐに書き込む）
+     */
+    public Item offer(Item current, int price) {
+        Lock lock = acceptLock.readLock();
+        lock.lock();
+        try {
+            if (!running) {
+                return null;
+            }
+            Long id = current.getId();
+            if (pending.size() >= maxSize && !pending.containsKey(id)) {
+                flush();
+                if (pending.size() >= maxSize) {
+                    return null;
+                }
+            }
+            long currentVersion = current.getVersion() == null ? 0L : current.getVersion();
+            boolean[] replaced = new boolean[1];
+            PendingPrice offered = pending.compute(id, (key, previous) -> {
+                replaced[0] = previous != null;
+                long base = previous == null ? currentVersion : Math.max(currentVersion, previous.version());
+                return new PendingPrice(price, base + 1);
+            });
+            (replaced[0] ? coalesced : buffered).incrementAndGet();
+            // 一覧のETagは書き込みを待たずに変える
+            catalogVersion.bump();
+            if (pending.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+                scheduler.execute(this::flushQuietly);
+            }
+            return current.toBuilder().price(price).version(offered.version()).build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 書き込み待ちの価格があるか
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * 書き込み待ちの価格と、書き込んだ後のバージョン。なければnull
+     */
+    public PendingPrice pendingPrice(Long id) {
+        return pending.isEmpty() ? null : pending.get(id);
+    }
+
+    /**
+     * 書き込み待ちの価格を捨てる
+     * アイテム全体の更新・削除の前に呼び、古い価格で後から上書きしないようにする
+     * 書き込み中の場合は、書き込みが終わるまで待つ
+     */
+    public void discard(Long id) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            pending.remove(id);
+        }
+    }
+
+    /**
+     * 指定したアイテムの書き込み待ちの価格を、すぐに書き込む
+     * アイテム全体の更新の前に呼び、クライアントに返したバージョンとDBのバージョンを揃える
+     * （書き込みに失敗した場合は書き込み待ちのまま残る）
+     */
+    public void flush(Long id) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            PendingPrice entry = pending.get(id);
+            if (entry != null) {
+                flushChunk(List.of(Map.entry(id, entry)));
+            }
+        }
+    }
+
+    /**
+     * 書き込み待ちの価格をDBに書き込む
+     * flush-size件ごとに1トランザクション・1回のJDBCバッチで送る。失敗したチャンクは次回に再度書き込む
+     * @return 書き込んだ件数
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            List<Map.Entry<Long, PendingPrice>> snapshot = new ArrayList<>(pending.size());
+            pending.forEach((id, entry) -> snapshot.add(Map.entry(id, entry)));
+
+            int written = 0;
+            for (int from = 0; from < snapshot.size(); from += flushSize) {
+                List<Map.Entry<Long, PendingPrice>> chunk = snapshot.subList(from, Math.min(from + flushSize, snapshot.size()));
+                written += flushChunk(chunk);
+            }
+            flushTimeRecorder.accept(System.nanoTime() - start);
+            return written;
+        }
+    }
+
+    private int flushChunk(List<Map.Entry<Long, PendingPrice>> chunk) {
+        List<Long> ids = chunk.stream().map(Map.Entry::getKey).toList();
+        List<Item> previousItems;
+        try {
+            previousItems = transactionTemplate.execute(status -> {
+                // 通知とキャッシュ用に、更新前の行をIN句1回でロックして読む（更新後の値はここから作る）
+                // コミットまで他の更新を待たせるため、読んだ値と書き込む直前の値が食い違わない
+                List<Item> items = itemRepository.findAllByIdForUpdate(ids).stream()
+                        .map(item -> item.toBuilder().build())
+                        .toList();
+                jdbcTemplate.batchUpdate(UPDATE_SQL, chunk, chunk.size(), (ps, entry) -> {
+                    ps.setInt(1, entry.getValue().price());
+                    ps.setLong(2, entry.getValue().version());
+                    ps.setLong(3, entry.getKey());
+                });
+                return items;
+            });
+        } catch (DataAccessException | TransactionException e) {
+            failures.incrementAndGet();
+            log.warn("Failed to flush {} buffered price updates; they will be retried.", chunk.size(), e);
+            return 0;
+        }
+        Map<Long, PendingPrice> writtenPrices = new HashMap<>(chunk.size() * 2);
+        chunk.forEach(entry -> writtenPrices.put(entry.getKey(), entry.getValue()));
+        // 書き込み中に新しい価格が入ったものは残し、次回に書き込む
+        chunk.forEach(entry -> pending.remove(entry.getKey(), entry.getValue()));
+        flushedRows.addAndGet(chunk.size());
+        for (Item previousItem : previousItems) {
+            PendingPrice written = writtenPrices.get(previousItem.getId());
+            long version = previousItem.getVersion() == null ? 0L : previousItem.getVersion();
+            Item updatedItem = previousItem.toBuilder()
+                    .price(written.price())
+                    .version(Math.max(version + 1, written.version()))
+                    .build();
+            if (pending.containsKey(updatedItem.getId())) {
+                itemCache.evict(updatedItem.getId());
+            } else {
+                itemCache.put(updatedItem);
+            }
+            eventPublisher.publishEvent(ItemChangedEvent.updated(previousItem, updatedItem.toBuilder().build()));
+        }
+        return chunk.size();
+    }
+
+    // スケジューラから呼ばれる。例外でスケジュールが止まらないようにする
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Failed to flush buffered price updates.", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    // 停止時は新しい更新の受け付けをやめ（受け付け中のofferは終わるまで待つ）、残っている分を全て書き込む
+    @Override
+    public void stop() {
+        Lock lock = acceptLock.writeLock();
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushInterval.toMillis() + 10_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Webサーバーがリクエストの受け付けを止めた後に停止する（停止は大きいphaseから順に行われる）
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * 1回の書き込みにかかった時間（ナノ秒）を受け取る処理を設定する
+     */
+    public void setFlushTimeRecorder(LongConsumer flushTimeRecorder) {
+        this.flushTimeRecorder = flushTimeRecorder;
+    }
+
+    /**
+     * 書き込み待ちの価格
+     * @param price 価格
+     * @param version 書き込んだ後のバージョン（読み込んだアイテムのバージョンがこれより小さければ、まだ書き込まれていない）
+     */
+    public record PendingPrice(int price, long version) {
+    }
+
+    /**
+     * バッファの状態
+     * @param pending 書き込み待ちの件数
+     * @param buffered バッファに新しく入った更新の数
+     * @param coalesced 書き込み前の値を上書きした（1回のUPDATEにまとめた）更新の数
+     * @param flushedRows 書き込んだ行数
+     * @param failures 書き込みに失敗した回数
+     */
+    public record Stats(int pending, long buffered, long coalesced, long flushedRows, long failures) {
+    }
+
+    public Stats stats() {
+        return new Stats(pending.size(), buffered.get(), coalesced.get(), flushedRows.get(), failures.get());
+    }
+}
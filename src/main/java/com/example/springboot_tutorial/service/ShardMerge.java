@@ -0,0 +1,85 @@
+package com.example.springboot_tutorial.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * シャードごとに並べた結果を、同じ順序のまま1つにまとめる（k-wayマージ）
+ * 各シャードの結果は先頭から順に読むだけなので、全件を読み込まなくても先頭から返せる
+ * バケットの移動中は同じ行が2つのシャードにあることがあるため、続けて同じIDが来た場合は1件にする
+ * （並び順はIDを最後のキーにしているので、同じ行は必ず隣り合う）
+ */
+final class ShardMerge {
+
+    private ShardMerge() {
+    }
+
+    static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, ToLongFunction<? super T> id, int limit) {
+        List<Iterator<T>> iterators = new ArrayList<>(sorted.size());
+        sorted.forEach(list -> iterators.add(list.iterator()));
+        Iterator<T> merged = merge(iterators, order, id);
+        List<T> result = new ArrayList<>();
+        while (result.size() < limit && merged.hasNext()) {
+            result.add(merged.next());
+        }
+        return result;
+    }
+
+    static <T> Iterator<T> merge(List<Iterator<T>> sorted, Comparator<? super T> order, ToLongFunction<? super T> id) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(sorted.size(), 1),
+                (a, b) -> order.compare(a.head, b.head));
+        for (Iterator<T> iterator : sorted) {
+            if (iterator.hasNext()) {
+                heads.add(new Cursor<>(iterator.next(), iterator));
+            }
+        }
+        return new Iterator<>() {
+            private boolean emitted;
+            private long lastId;
+
+            @Override
+            public boolean hasNext() {
+                // 直前に返した行と同じIDの行を読み飛ばす
+                while (emitted && !heads.isEmpty() && id.applyAsLong(heads.peek().head) == lastId) {
+                    advance(heads.poll());
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Cursor<T> cursor = heads.poll();
+                T value = cursor.head;
+                emitted = true;
+                lastId = id.applyAsLong(value);
+                advance(cursor);
+                return value;
+            }
+
+            private void advance(Cursor<T> cursor) {
+                if (cursor.rest.hasNext()) {
+                    cursor.head = cursor.rest.next();
+                    heads.add(cursor);
+                }
+            }
+        };
+    }
+
+    private static final class Cursor<T> {
+        private T head;
+        private final Iterator<T> rest;
+
+        private Cursor(T head, Iterator<T> rest) {
+            this.head = head;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.config.ItemShards;
+import com.example.springboot_tutorial.model.ShardRebalance;
+import com.example.springboot_tutorial.model.ShardStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * シャードを追加した時に、バケットを全シャードで均等になるよう移動する
+ * シャードを追加するには、item.sharding.urlsの末尾にURLを加えて再起動し、POST /shards/rebalance を呼ぶ
+ * （追加したシャードは、移動するまでバケットを持たない。IDは変わらない）
+ * バケットは1つずつ「移動先にコピー → 持ち主を変更 → 移動元から削除」の順で移動し、その間はそのバケットの読み書きを待たせる
+ * 途中で止まった場合に残った行（持ち主でないシャードにある行）は、次の実行の最初に削除する
+ */
+@Component
+@ConditionalOnProperty(name = "item.sharding.enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private final ItemShards itemShards;
+
+    public ShardRebalancer(ItemShards itemShards) {
+        this.itemShards = itemShards;
+    }
+
+    /**
+     * シャードごとのバケット数とアイテム数
+     */
+    public List<ShardStatus> status() {
+        int[] owners = itemShards.owners();
+        int[] buckets = new int[itemShards.size()];
+        for (int owner : owners) {
+            buckets[owner]++;
+        }
+        List<ShardStatus> status = new ArrayList<>(itemShards.size());
+        for (ItemShards.Shard shard : itemShards.all()) {
+            Long items = shard.jdbc().queryForObject("SELECT COUNT(*) FROM item", Long.class);
+            status.add(new ShardStatus(shard.index(), buckets[shard.index()], items == null ? 0 : items));
+        }
+        return status;
+    }
+
+    /**
+     * バケット数が均等になるまでの移動（余りは番号の小さいシャードが1つずつ多く持つ）
+     * 多く持っているシャードから、足りないシャードへ最小限の数だけ移動する
+     */
+    public List<ShardRebalance.Move> plan() {
+        int[] owners = itemShards.owners();
+        int shardCount = itemShards.size();
+        List<List<Integer>> owned = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < owners.length; bucket++) {
+            owned.get(owners[bucket]).add(bucket);
+        }
+
+        Deque<ShardRebalance.Move> surplus = new ArrayDeque<>();
+        int[] target = new int[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            target[shard] = owners.length / shardCount + (shard < owners.length % shardCount ? 1 : 0);
+            List<Integer> buckets = owned.get(shard);
+            for (int i = buckets.size() - 1; i >= target[shard]; i--) {
+                surplus.add(new ShardRebalance.Move(buckets.get(i), shard, -1));
+            }
+        }
+        List<ShardRebalance.Move> moves = new ArrayList<>(surplus.size());
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int missing = target[shard] - owned.get(shard).size(); missing > 0; missing--) {
+                ShardRebalance.Move move = surplus.poll();
+                moves.add(new ShardRebalance.Move(move.bucket(), move.from(), shard));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * バケットを移動して均等にする（同時に実行できるのは1つだけ）
+     * @param dryRun trueの場合は移動せず、予定だけを返す
+     */
+    public synchronized ShardRebalance rebalance(boolean dryRun) {
+        List<ShardRebalance.Move> moves = plan();
+        if (dryRun) {
+            return new ShardRebalance(true, moves, 0, 0);
+        }
+        long orphansRemoved = removeOrphans();
+        long rowsMoved = 0;
+        for (ShardRebalance.Move move : moves) {
+            rowsMoved += move(move);
+        }
+        return new ShardRebalance(false, moves, orphansRemoved, rowsMoved);
+    }
+
+    private long move(ShardRebalance.Move move) {
+        ItemShards.Shard from = itemShards.get(move.from());
+        ItemShards.Shard to = itemShards.get(move.to());
+        Lock lock = itemShards.bucketWriteLock(move.bucket());
+        lock.lock();
+        try {
+            List<Object[]> rows = from.jdbc().query(
+                    "SELECT id, name, price, version, bucket FROM item WHERE bucket = ?",
+                    (rs, rowNum) -> new Object[]{
+                            rs.getLong(1), rs.getString(2), rs.getObject(3, Integer.class), rs.getLong(4), rs.getInt(5)},
+                    move.bucket());
+            to.transaction().executeWithoutResult(status -> to.jdbc().batchUpdate(
+                    "INSERT INTO item (id, name, price, version, bucket) VALUES (?, ?, ?, ?, ?)", rows));
+            // ここで止まった場合は、移動元に残った行を次の実行で削除する
+            itemShards.assign(move.bucket(), move.to());
+            from.jdbc().update("DELETE FROM item WHERE bucket = ?", move.bucket());
+            return rows.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 持ち主でないシャードにある行（コピー後・削除前に止まった移動の残り）を削除する
+    private long removeOrphans() {
+        int[] owners = itemShards.owners();
+        long removed = 0;
+        for (ItemShards.Shard shard : itemShards.all()) {
+            List<Object> others = new ArrayList<>();
+            for (int bucket = 0; bucket < owners.length; bucket++) {
+                if (owners[bucket] != shard.index()) {
+                    others.add(bucket);
+                }
+            }
+            if (others.isEmpty()) {
+                continue;
+            }
+            removed += shard.jdbc().update("DELETE FROM item WHERE bucket IN ("
+                    + String.join(",", Collections.nCopies(others.size(), "?")) + ")", others.toArray());
+        }
+        return removed;
+    }
+}
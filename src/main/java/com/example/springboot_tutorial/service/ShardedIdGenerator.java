@@ -0,0 +1,71 @@
+package com.example.springboot_tutorial.service;
+
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * シャードに分けて保存するアイテムのIDを採番する（DBごとの自動採番を使わず、全シャードで一意なIDにする）
+ * IDは上位から「時刻（ミリ秒）41ビット・バケット10ビット・連番12ビット」で、作成順にほぼ昇順になる
+ * バケットは時刻・連番のハッシュで決めてIDに埋め込むため、IDだけで保存先のシャードが分かる
+ * 連番はこのインスタンスの中でだけ一意なため、シャードを使うアプリケーションは1台で動かす（ShardingConfigを参照）
+ * （バケット → シャードの対応はItemShardsが持ち、シャードを追加した時はバケット単位で移動する）
+ * 同じミリ秒に連番を使い切った場合は、次のミリ秒まで待つ
+ */
+public class ShardedIdGenerator {
+
+    public static final int BUCKET_BITS = 10;
+    public static final int BUCKETS = 1 << BUCKET_BITS;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int BUCKET_SHIFT = SEQUENCE_BITS;
+    private static final int TIME_SHIFT = BUCKET_SHIFT + BUCKET_BITS;
+    private static final long EPOCH = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    // 以下はthisで同期して読み書きする
+    private long lastMillis = -1;
+    private int sequence;
+
+    public long next() {
+        long millis;
+        int seq;
+        synchronized (this) {
+            // 時計が戻った場合は、最後に使った時刻のまま採番する
+            millis = Math.max(System.currentTimeMillis() - EPOCH, lastMillis);
+            if (millis == lastMillis) {
+                sequence = (sequence + 1) & ((1 << SEQUENCE_BITS) - 1);
+                if (sequence == 0) {
+                    millis = waitNextMillis(lastMillis);
+                }
+            } else {
+                sequence = 0;
+            }
+            lastMillis = millis;
+            seq = sequence;
+        }
+        int bucket = (int) (mix(millis << BUCKET_SHIFT | seq) & (BUCKETS - 1));
+        return millis << TIME_SHIFT | (long) bucket << BUCKET_SHIFT | seq;
+    }
+
+    /**
+     * IDに埋め込まれたバケット（このクラスで採番していないIDも、同じ位置のビットで決まったバケットに入る）
+     */
+    public static int bucketOf(long id) {
+        return (int) ((id >>> BUCKET_SHIFT) & (BUCKETS - 1));
+    }
+
+    private static long waitNextMillis(long lastMillis) {
+        long millis;
+        while ((millis = System.currentTimeMillis() - EPOCH) <= lastMillis) {
+            LockSupport.parkNanos(100_000);
+        }
+        return millis;
+    }
+
+    // 連続したIDが同じバケットに偏らないよう、ビットを混ぜる（SplittableRandomと同じ混ぜ方）
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.springboot_tutorial.service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.config.ItemShards;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.exception.ResourceNotFoundException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+import com.example.springboot_tutorial.repository.ItemSearchRepositoryImpl;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * アイテムを複数のシャード（ItemShards）に分けて保存するItemServiceの実装
+ * item.sharding.enabled=true の時だけ有効になり、ItemServiceImplの代わりに使われる
+ * IDを指定する読み書きは、IDに埋め込まれたバケットを持つ1つのシャードだけで行う
+ * 一覧・ページ・検索は全シャードに並列に問い合わせ、各シャードで並べた結果を同じ順序でまとめる（ShardMerge）
+ * キャッシュ・変更イベントはItemServiceImplと共通。価格のwrite-behindとカタログ索引は使わない
+ */
+@Timed(value = "item.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
+@Primary
+@Service
+@ConditionalOnProperty(name = "item.sharding.enabled", havingValue = "true")
+public class ShardedItemService implements ItemService, DisposableBean {
+
+    private static final int MAX_PRICE_UPDATE_ATTEMPTS = 3;
+
+    private static final String COLUMNS = "SELECT id, name, price, version FROM item";
+    private static final RowMapper<Item> ITEM_ROW = (rs, rowNum) -> Item.builder()
+            .id(rs.getLong(1))
+            .name(rs.getString(2))
+            .price(rs.getObject(3, Integer.class))
+            .version(rs.getLong(4))
+            .build();
+    private static final Comparator<Item> BY_ID = Comparator.comparing(Item::getId);
+
+    private final ItemShards itemShards;
+    private final ShardedIdGenerator idGenerator;
+    private final ItemCache itemCache;
+    private final ApplicationEventPublisher eventPublisher;
+    // シャードへの並列の問い合わせ（待っている間はスレッドを占有しないよう、仮想スレッドで行う）
+    private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardedItemService(ItemShards itemShards, ShardedIdGenerator idGenerator, ItemCache itemCache,
+                              ApplicationEventPublisher eventPublisher) {
+        this.itemShards = itemShards;
+        this.idGenerator = idGenerator;
+        this.itemCache = itemCache;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 全シャードのアイテムをID順に取得
+     * GET /items
+     */
+    @Override
+    public List<Item> findAll() {
+        List<List<Item>> perShard = scatter(shard -> shard.jdbc().query(COLUMNS + " ORDER BY id", ITEM_ROW));
+        return ShardMerge.merge(perShard, BY_ID, Item::getId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * アイテム一覧をID順にページ単位で取得（キーセットページネーション）
+     * 各シャードから次のsize件ずつ取得し、まとめた中から先頭のsize件を返す
+     * GET /items/page
+     */
+    @Override
+    public ItemPage findPage(Long afterId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), ItemServiceImpl.MAX_PAGE_SIZE);
+        long after = afterId == null ? 0L : afterId;
+        List<List<Item>> perShard = scatter(shard -> shard.jdbc().query(
+                COLUMNS + " WHERE id > ? ORDER BY id LIMIT ?", ITEM_ROW, after, pageSize));
+        List<Item> items = ShardMerge.merge(perShard, BY_ID, Item::getId, pageSize);
+        Long nextCursor = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new ItemPage(items, nextCursor);
+    }
+
+    /**
+     * 全シャードを同時に先頭から読み、ID順にまとめながら1件ずつactionに渡す
+     * 各シャードの結果を少しずつ読むため、件数に関わらずメモリ使用量は一定（シャードごとにコネクションを1つ使う）
+     * GET /items/stream
+     */
+    @Override
+    public void streamAll(Consumer<Item> action) {
+        List<Stream<Item>> streams = new ArrayList<>(itemShards.size());
+        try {
+            for (ItemShards.Shard shard : itemShards.all()) {
+                streams.add(shard.jdbc().queryForStream(COLUMNS + " ORDER BY id", ITEM_ROW));
+            }
+            ShardMerge.merge(streams.stream().map(Stream::iterator).toList(), BY_ID, Item::getId)
+                    .forEachRemaining(action);
+        } finally {
+            streams.forEach(Stream::close);
+        }
+    }
+
+    /**
+     * 全シャードで同じ条件・並び順・件数の検索を行い、まとめた中から先頭のlimit件を返す
+     * GET /items/search
+     */
+    @Override
+    public List<ItemSummary> search(ItemSearchQuery query) {
+        ItemSearchQuery normalized = ItemServiceImpl.normalize(query);
+        List<Object> args = new ArrayList<>();
+        String sql = searchSql(normalized, args);
+        List<List<ItemSummary>> perShard = scatter(shard -> shard.jdbc().query(sql,
+                (rs, rowNum) -> new ItemSummary(rs.getLong(1), rs.getString(2), rs.getObject(3, Integer.class)),
+                args.toArray()));
+        return ShardMerge.merge(perShard, searchOrder(normalized), ItemSummary::id, normalized.limit());
+    }
+
+    /**
+     * IDを指定してアイテムを1件取得（キャッシュになければ、IDのバケットを持つシャードから読み込む）
+     * GET /items/{id}
+     */
+    @Override
+    public Item findById(Long id) {
+        return itemCache.get(id, this::load)
+                .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
+    }
+
+    /**
+     * IDを複数指定してアイテムを取得
+     * キャッシュにないIDをシャードごとに分け、各シャードにIN句で並列に問い合わせる
+     * GET /items?ids=1,2,3
+     */
+    @Override
+    public List<Item> findByIds(List<Long> ids) {
+        if (ids.size() > ItemServiceImpl.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Too many ids. Maximum is " + ItemServiceImpl.MAX_PAGE_SIZE);
+        }
+        Map<Long, Item> found = itemCache.getAll(ids, this::loadAll);
+        return ids.stream()
+                .distinct()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * 新しいアイテムを1件登録（IDはShardedIdGeneratorで採番し、IDのバケットを持つシャードに保存する）
+     */
+    @Override
+    public Item createItem(Item item) {
+        if (item.getId() != null) {
+            throw new IllegalArgumentException("A new item cannot have an ID");
+        }
+        long id = idGenerator.next();
+        Item savedItem = Item.builder().id(id).name(item.getName()).price(item.getPrice()).version(0L).build();
+        try {
+            itemShards.route(id, shard -> shard.jdbc().update(
+                    "INSERT INTO item (id, name, price, version, bucket) VALUES (?, ?, ?, ?, ?)",
+                    id, savedItem.getName(), savedItem.getPrice(), savedItem.getVersion(),
+                    ShardedIdGenerator.bucketOf(id)));
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Database registration failed.", e);
+        }
+        itemCache.evict(id);
+        eventPublisher.publishEvent(ItemChangedEvent.created(savedItem.toBuilder().build()));
+        return savedItem;
+    }
+
+    @Override
+    public Item updateItem(Long id, Item newItemData) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID for update cannot be null.");
+        }
+        return update(id, newItemData, null);
+    }
+
+    @Override
+    public Item updateItem(Long id, Item newItemData, Long expectedVersion) {
+        if (id == null || expectedVersion == null) {
+            throw new IllegalArgumentException("ID and version for update cannot be null.");
+        }
+        return update(id, newItemData, expectedVersion);
+    }
+
+    /**
+     * IDを指定してアイテムの価格だけを更新する（キャッシュのバージョンで更新し、競合したら読み直してやり直す）
+     */
+    @Override
+    public Item updatePrice(Long id, Integer price) {
+        if (id == null || price == null) {
+            throw new IllegalArgumentException("ID and price for update cannot be null.");
+        }
+        Item item = findById(id);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update(id, item.toBuilder().price(price).build(), item.getVersion());
+            } catch (VersionConflictException e) {
+                if (attempt == MAX_PRICE_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                itemCache.evict(id);
+                item = findById(id);
+            }
+        }
+    }
+
+    @Override
+    public void deleteItem(Long id) {
+        Item itemToDelete = findById(id);
+        try {
+            int deleted = itemShards.route(id, shard -> shard.jdbc().update("DELETE FROM item WHERE id = ?", id));
+            if (deleted == 0) {
+                throw new ResourceNotFoundException("Item not found with id: " + id);
+            }
+            eventPublisher.publishEvent(ItemChangedEvent.deleted(id, itemToDelete));
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Database deletion failed.", e);
+        } finally {
+            itemCache.evict(id);
+        }
+    }
+
+    // 終了時に、シャードへの問い合わせ中の仮想スレッドを止める
+    @Override
+    public void destroy() {
+        scatterExecutor.shutdownNow();
+    }
+
+    // 行をロックして読み込み、バージョンを確認してから更新する（expectedVersionがnullなら確認しない）
+    private Item update(Long id, Item newItemData, Long expectedVersion) {
+        Change change;
+        try {
+            change = itemShards.route(id, shard -> shard.transaction().execute(status -> {
+                Item current = shard.jdbc().query(COLUMNS + " WHERE id = ? FOR UPDATE", ITEM_ROW, id).stream()
+                        .findFirst()
+                        .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
+                if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                    throw new VersionConflictException("Item has been modified by another request. id: " + id);
+                }
+                shard.jdbc().update("UPDATE item SET name = ?, price = ?, version = version + 1 WHERE id = ?",
+                        newItemData.getName(), newItemData.getPrice(), id);
+                return new Change(current, current.toBuilder()
+                        .name(newItemData.getName())
+                        .price(newItemData.getPrice())
+                        .version(current.getVersion() + 1)
+                        .build());
+            }));
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Database update failed.", e);
+        } finally {
+            // 同じアイテムの更新が並行した場合に古い値を入れないよう、コミット後の値は入れずに削除する（次の読み込みでシャードから読む）
+            itemCache.evict(id);
+        }
+        eventPublisher.publishEvent(ItemChangedEvent.updated(change.before(), change.after().toBuilder().build()));
+        return change.after();
+    }
+
+    private Optional<Item> load(Long id) {
+        return itemShards.route(id, shard -> shard.jdbc().query(COLUMNS + " WHERE id = ?", ITEM_ROW, id).stream()
+                .findFirst());
+    }
+
+    // IDを持ち主のシャードごとに分けて並列に読み込む
+    private List<Item> loadAll(Set<Long> ids) {
+        Map<ItemShards.Shard, List<Long>> byShard = new HashMap<>();
+        ids.forEach(id -> byShard.computeIfAbsent(itemShards.ownerOf(id), shard -> new ArrayList<>()).add(id));
+        List<Supplier<List<Item>>> queries = new ArrayList<>(byShard.size());
+        byShard.forEach((shard, shardIds) -> queries.add(() -> shard.jdbc().query(
+                COLUMNS + " WHERE id IN (" + String.join(",", Collections.nCopies(shardIds.size(), "?")) + ")",
+                ITEM_ROW, shardIds.toArray())));
+        List<Item> items = new ArrayList<>(ids.size());
+        parallel(queries).forEach(items::addAll);
+
+        // 読み込み中にバケットが移動した場合は、移動先から読み直す
+        Set<Long> missing = new HashSet<>(ids);
+        items.forEach(item -> missing.remove(item.getId()));
+        byShard.forEach((shard, shardIds) -> shardIds.stream()
+                .filter(missing::contains)
+                .filter(id -> itemShards.ownerOf(id) != shard)
+                .forEach(id -> load(id).ifPresent(items::add)));
+        return items;
+    }
+
+    private <T> List<T> scatter(Function<ItemShards.Shard, T> query) {
+        return parallel(itemShards.all().stream().<Supplier<T>>map(shard -> () -> query.apply(shard)).toList());
+    }
+
+    // 全ての問い合わせを並列に実行する（1つなら呼び出し元のスレッドで実行する）
+    private <T> List<T> parallel(List<Supplier<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            results.add(tasks.get(0).get());
+            return results;
+        }
+        List<Future<T>> futures = tasks.stream().<Future<T>>map(task -> scatterExecutor.submit(task::get)).toList();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            // シャードで発生した例外（DataAccessExceptionなど）をそのまま投げる
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards.", e);
+        }
+    }
+
+    // ItemSearchRepositoryImplと同じ条件・並び順のSQL（NULLの位置はsearchOrderと合わせて明示する）
+    private static String searchSql(ItemSearchQuery query, List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT id, name, price FROM item");
+        List<String> conditions = new ArrayList<>();
+        if (query.name() != null && !query.name().isEmpty()) {
+            String escaped = ItemSearchRepositoryImpl.escapeLike(query.name());
+            conditions.add("name LIKE ? ESCAPE '" + ItemSearchRepositoryImpl.LIKE_ESCAPE + "'");
+            args.add(query.nameMatch() == ItemSearchQuery.NameMatch.CONTAINS ? "%" + escaped + "%" : escaped + "%");
+        }
+        if (query.minPrice() != null) {
+            conditions.add("price >= ?");
+            args.add(query.minPrice());
+        }
+        if (query.maxPrice() != null) {
+            conditions.add("price <= ?");
+            args.add(query.maxPrice());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        String direction = query.descending() ? " DESC" : " ASC";
+        String nulls = query.descending() ? " NULLS LAST" : " NULLS FIRST";
+        sql.append(" ORDER BY ");
+        switch (query.sortBy()) {
+            case NAME -> sql.append("name").append(direction).append(nulls).append(", ");
+            case PRICE -> sql.append("price").append(direction).append(nulls).append(", ");
+            case ID -> { }
+        }
+        sql.append("id").append(direction).append(" LIMIT ?");
+        args.add(query.limit());
+        return sql.toString();
+    }
+
+    private static Comparator<ItemSummary> searchOrder(ItemSearchQuery query) {
+        Comparator<ItemSummary> byId = Comparator.comparing(ItemSummary::id);
+        Comparator<ItemSummary> order = switch (query.sortBy()) {
+            case NAME -> Comparator.comparing(ItemSummary::name, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(byId);
+            case PRICE -> Comparator.comparing(ItemSummary::price, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()))
+                    .thenComparing(byId);
+            case ID -> byId;
+        };
+        return query.descending() ? order.reversed() : order;
+    }
+
+    private record Change(Item before, Item after) {
+    }
+}
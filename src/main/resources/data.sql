@@ -1,3 +1,3 @@
-INSERT INTO item (name, price) VALUES ('万年筆', 5000);
-INSERT INTO item (name, price) VALUES ('インク', 1200);
-INSERT INTO item (name, price) VALUES ('原稿用紙', 450);
+INSERT INTO item (id, name, price, version) VALUES (NEXT VALUE FOR item_seq, '万年筆', 5000, 0);
+INSERT INTO item (id, name, price, version) VALUES (NEXT VALUE FOR item_seq, 'インク', 1200, 0);
+INSERT INTO item (id, name, price, version) VALUES (NEXT VALUE FOR item_seq, '原稿用紙', 450, 0);
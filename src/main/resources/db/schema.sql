@@ -0,0 +1,14 @@
+-- prodプロファイル用のスキーマ（Hibernateはこのスキーマを検証するだけで、作成はしない）
+-- 定義はItemエンティティと一致させること
+CREATE SEQUENCE IF NOT EXISTS item_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS item (
+    id      BIGINT       NOT NULL,
+    name    VARCHAR(255),
+    price   INTEGER,
+    version BIGINT,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_item_name ON item (name);
+CREATE INDEX IF NOT EXISTS idx_item_price ON item (price);
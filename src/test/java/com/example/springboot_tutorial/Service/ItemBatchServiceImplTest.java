@@ -0,0 +1,98 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemBatchResult;
+import com.example.springboot_tutorial.model.ItemBatchResult.Status;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import com.example.springboot_tutorial.service.ItemBatchServiceImpl;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemBatchServiceImplTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock  // トランザクションの開始・コミットは何もしない
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    private ItemBatchServiceImpl itemBatchService;
+
+    // チャンクサイズ2で組み立て、チャンクをまたぐ処理を確認できるようにする
+    @BeforeEach
+    void setUp() {
+        ItemCache itemCache = new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        itemBatchService = new ItemBatchServiceImpl(itemRepository, entityManager,
+                new TransactionTemplate(transactionManager), itemCache, eventPublisher, priceUpdateBuffer, 2);
+    }
+
+    @Test
+    @DisplayName("アイテムを一括登録するテスト(ID指定のものは不正)")
+    void createItems() {
+        // Arrange: saveAllが呼ばれたら、渡されたアイテムにIDを振るよう設定
+        Item newItem1 = Item.builder().name("新規アイテム1").price(100).build();
+        Item newItem2 = Item.builder().id(5L).name("ID指定アイテム").price(200).build();
+        Item newItem3 = Item.builder().name("新規アイテム3").price(300).build();
+        doAnswer(invocation -> {
+            List<Item> items = invocation.getArgument(0);
+            items.forEach(item -> item.setId(item.getPrice() / 100L));
+            return items;
+        }).when(itemRepository).saveAll(anyList());
+
+        // Act
+        List<ItemBatchResult> results = itemBatchService.createItems(List.of(newItem1, newItem2, newItem3).iterator());
+
+        // Assert: 入力順に結果が並び、indexは入力全体での位置 && チャンクごとに1回ずつ保存
+        assertThat(results).extracting(ItemBatchResult::status)
+                .containsExactly(Status.CREATED, Status.INVALID, Status.CREATED);
+        assertThat(results).extracting(ItemBatchResult::index).containsExactly(0, 1, 2);
+        assertThat(results.get(2).id()).isEqualTo(3L);
+        verify(itemRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("アイテムを一括削除するテスト(存在しないIDはNOT_FOUND)")
+    void deleteItems() {
+        // Arrange: id=1のみ存在する
+        Item existingItem = Item.builder().id(1L).name("テストアイテム1").price(1000).version(0L).build();
+        when(itemRepository.findAllById(anyCollection())).thenReturn(List.of(existingItem));
+
+        // Act
+        List<ItemBatchResult> results = itemBatchService.deleteItems(List.of(1L, 99L).iterator());
+
+        // Assert: 存在するものだけを1文で削除し、削除前の値を通知する
+        assertThat(results).extracting(ItemBatchResult::status)
+                .containsExactly(Status.DELETED, Status.NOT_FOUND);
+        verify(itemRepository, times(1)).deleteAllByIdInBatch(Set.of(1L));
+        verify(eventPublisher, times(1)).publishEvent(ItemChangedEvent.deleted(1L, existingItem));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+import com.example.springboot_tutorial.service.CatalogSnapshot;
+import com.example.springboot_tutorial.service.ItemCatalogIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemCatalogIndexTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ItemCatalogIndex itemCatalogIndex;
+
+    // 起動時にDBから3件を読み込む（id=3は価格がNULL）
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(1L, 2L, 3L);
+            when(rs.getString(2)).thenReturn("テストアイテム1", "テストアイテム2", "テストアイテム3");
+            when(rs.getObject(3, Integer.class)).thenReturn(500, 1500, null);
+            for (int i = 0; i < 3; i++) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        itemCatalogIndex = new ItemCatalogIndex(jdbcTemplate, true, 3);
+        itemCatalogIndex.onApplicationReady();
+    }
+
+    @AfterEach
+    void tearDown() {
+        itemCatalogIndex.destroy();
+    }
+
+    @Test
+    @DisplayName("起動時にDBから全件を読み込むテスト")
+    void snapshot_Loaded() {
+        // Act
+        List<Item> items = itemCatalogIndex.snapshot().items();
+
+        // Assert: ID順に並び、価格のNULLも保持している
+        assertThat(items).containsExactly(
+                Item.builder().id(1L).name("テストアイテム1").price(500).version(0L).build(),
+                Item.builder().id(2L).name("テストアイテム2").price(1500).version(0L).build(),
+                Item.builder().id(3L).name("テストアイテム3").version(0L).build());
+    }
+
+    @Test
+    @DisplayName("登録・更新・削除を反映するテスト(DBにアクセスしない)")
+    void onItemChanged() {
+        // Arrange
+        Item before = Item.builder().id(1L).name("テストアイテム1").price(500).version(0L).build();
+        Item after = before.toBuilder().price(700).version(1L).build();
+        Item created = Item.builder().id(4L).name("新規アイテム").price(2500).version(0L).build();
+
+        // Act: id=1の古いバージョンの更新が後から届いても無視する
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.updated(before, after));
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.updated(before, before));
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.deleted(2L, null));
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.created(created));
+
+        // Assert
+        assertThat(itemCatalogIndex.snapshot().items()).extracting(Item::getId).containsExactly(1L, 3L, 4L);
+        assertThat(itemCatalogIndex.snapshot().items().get(0)).isEqualTo(after);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("溜まった変更を別スレッドで行に反映し、その後も同じ結果を返すテスト")
+    void onItemChanged_Compacted() throws InterruptedException {
+        // Arrange
+        Item updated = Item.builder().id(3L).name("更新後").price(100).version(1L).build();
+        Item created = Item.builder().id(5L).name("新規アイテム").price(1000).version(0L).build();
+        ItemSearchQuery byPrice = new ItemSearchQuery(
+                null, ItemSearchQuery.NameMatch.PREFIX, null, null, ItemSearchQuery.SortKey.PRICE, false, 10);
+
+        // Act: 3件目で行への反映が始まる
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.updated(
+                Item.builder().id(3L).name("テストアイテム3").version(0L).build(), updated));
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.deleted(1L, null));
+        List<ItemSummary> overlaid = itemCatalogIndex.snapshot().search(byPrice);
+        itemCatalogIndex.onItemChanged(ItemChangedEvent.created(created));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (itemCatalogIndex.pendingChanges() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Assert: 行に反映する前も後も、変更を含めた価格順・ID順で返す
+        assertThat(overlaid).extracting(ItemSummary::id).containsExactly(3L, 2L);
+        assertThat(itemCatalogIndex.pendingChanges()).isZero();
+        assertThat(itemCatalogIndex.snapshot().search(byPrice)).extracting(ItemSummary::id).containsExactly(3L, 5L, 2L);
+        assertThat(itemCatalogIndex.snapshot().items()).containsExactly(
+                updated, Item.builder().id(2L).name("テストアイテム2").price(1500).version(0L).build(), created);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("価格帯で絞り込み、価格順に並べるテスト")
+    void search_PriceOrder() {
+        // Arrange
+        CatalogSnapshot catalog = itemCatalogIndex.snapshot();
+        ItemSearchQuery filtered = new ItemSearchQuery(
+                null, ItemSearchQuery.NameMatch.PREFIX, 1000, null, ItemSearchQuery.SortKey.PRICE, false, 10);
+        ItemSearchQuery descending = new ItemSearchQuery(
+                null, ItemSearchQuery.NameMatch.PREFIX, null, null, ItemSearchQuery.SortKey.PRICE, true, 10);
+
+        // Act&Assert: 絞り込むと価格がNULLの行は含まれず、降順ではNULLが末尾になる
+        assertThat(catalog.search(filtered)).containsExactly(new ItemSummary(2L, "テストアイテム2", 1500));
+        assertThat(catalog.search(descending)).extracting(ItemSummary::id).containsExactly(2L, 1L, 3L);
+    }
+
+    @Test
+    @DisplayName("名前を条件に使う検索は索引で処理しないテスト")
+    void supports_Name() {
+        // Arrange
+        ItemSearchQuery query = new ItemSearchQuery(
+                "テスト", ItemSearchQuery.NameMatch.PREFIX, null, null, ItemSearchQuery.SortKey.ID, false, 10);
+
+        // Act&Assert
+        assertThat(CatalogSnapshot.supports(query)).isFalse();
+    }
+
+    @Test
+    @DisplayName("指定したIDより後ろをページ単位で取得するテスト")
+    void itemsAfter() {
+        // Act
+        List<Item> page = itemCatalogIndex.snapshot().itemsAfter(1L, 1);
+
+        // Assert
+        assertThat(page).extracting(Item::getId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("無効な場合は読み込まずにnullを返すテスト")
+    void snapshot_Disabled() {
+        // Arrange
+        ItemCatalogIndex disabled = new ItemCatalogIndex(jdbcTemplate, false, 3);
+
+        // Act
+        disabled.onApplicationReady();
+
+        // Assert: setUpの1回だけ
+        assertThat(disabled.snapshot()).isNull();
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+    }
+}
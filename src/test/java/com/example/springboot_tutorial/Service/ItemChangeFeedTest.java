@@ -0,0 +1,78 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemChange;
+import com.example.springboot_tutorial.service.ItemChangeFeed;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ItemChangeFeedTest {
+
+    private ItemChangeFeed itemChangeFeed;
+
+    // 直近3件だけを保持するようにして、上書きされた場合を確認できるようにする
+    @BeforeEach
+    void setUp() {
+        itemChangeFeed = new ItemChangeFeed(3);
+    }
+
+    @Test
+    @DisplayName("指定した通し番号の続きから変更を読むテスト")
+    void readAfter() {
+        // Arrange
+        Item item = Item.builder().id(1L).name("テストアイテム1").price(1000).version(0L).build();
+        itemChangeFeed.onItemChanged(ItemChangedEvent.created(item));
+        itemChangeFeed.onItemChanged(ItemChangedEvent.deleted(1L, item));
+
+        // Act
+        List<ItemChange> changes = itemChangeFeed.readAfter(1, 10);
+
+        // Assert
+        assertThat(changes).containsExactly(new ItemChange(2, ItemChange.Type.DELETED, 1L, null));
+        assertThat(itemChangeFeed.lastSequence()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("上書きされた変更を要求するとRESETを先頭に返すテスト")
+    void readAfter_Overwritten() {
+        // Arrange: 5件追記し、1と2は上書きされている
+        for (long id = 1; id <= 5; id++) {
+            Item item = Item.builder().id(id).name("テストアイテム" + id).price(1000).version(0L).build();
+            itemChangeFeed.onItemChanged(ItemChangedEvent.created(item));
+        }
+
+        // Act
+        List<ItemChange> changes = itemChangeFeed.readAfter(0, 10);
+
+        // Assert: RESETの後に保持している3〜5が続く
+        assertThat(changes).extracting(ItemChange::type).containsExactly(ItemChange.Type.RESET,
+                ItemChange.Type.CREATED, ItemChange.Type.CREATED, ItemChange.Type.CREATED);
+        assertThat(changes).extracting(ItemChange::sequence).containsExactly(2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    @DisplayName("一括取り込みはRESETとして追記されるテスト")
+    void onItemsImported() throws Exception {
+        // Act
+        itemChangeFeed.onItemsImported(new ItemsImportedEvent(10));
+
+        // Assert: 待っている購読者はすぐに起こされる
+        assertThat(itemChangeFeed.awaitAfter(0, Duration.ofSeconds(1))).isTrue();
+        assertThat(itemChangeFeed.readAfter(0, 10)).containsExactly(ItemChange.reset(1));
+    }
+
+    @Test
+    @DisplayName("新しい変更がなければタイムアウトするテスト")
+    void awaitAfter_Timeout() throws Exception {
+        // Act&Assert
+        assertThat(itemChangeFeed.awaitAfter(0, Duration.ofMillis(10))).isFalse();
+    }
+}
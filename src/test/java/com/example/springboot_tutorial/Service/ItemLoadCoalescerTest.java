@@ -0,0 +1,155 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import com.example.springboot_tutorial.service.ItemLoadCoalescer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemLoadCoalescerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Test
+    @DisplayName("同時に来た読み込みを1回のSQLにまとめ、同じIDの読み込みは共有するテスト")
+    void load_Coalesced() throws Exception {
+        // Arrange: 待ち時間を長めにして、全スレッドの呼び出しが1つにまとまるようにする
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, true, Duration.ofMillis(200), 100, TIMEOUT);
+        Item item1 = Item.builder().id(1L).name("テストアイテム1").price(1000).version(0L).build();
+        Item item2 = Item.builder().id(2L).name("テストアイテム2").price(2000).version(0L).build();
+        when(itemRepository.findValuesByIdIn(Set.of(1L, 2L, 99L))).thenReturn(List.of(item1, item2));
+
+        // Act: id=1を2回、id=2・id=99を1回ずつ同時に読み込む
+        List<Long> ids = List.of(1L, 1L, 2L, 99L);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(ids.size());
+        List<Future<Optional<Item>>> results = new ArrayList<>();
+        try {
+            for (Long id : ids) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return coalescer.load(id);
+                }));
+            }
+            start.countDown();
+
+            // Assert
+            assertThat(results.get(0).get()).contains(item1);
+            assertThat(results.get(1).get()).contains(item1);
+            assertThat(results.get(2).get()).contains(item2);
+            assertThat(results.get(3).get()).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(itemRepository, times(1)).findValuesByIdIn(any());
+        assertThat(coalescer.stats()).isEqualTo(new ItemLoadCoalescer.Stats(4, 1, 1));
+    }
+
+    @Test
+    @DisplayName("上限の件数に達したら待たずに読み込むテスト")
+    void load_BatchFull() {
+        // Arrange: 上限1件なので、待ち時間（1分）を待たない
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, true, Duration.ofMinutes(1), 1, TIMEOUT);
+        Item item1 = Item.builder().id(1L).name("テストアイテム1").price(1000).version(0L).build();
+        when(itemRepository.findValuesByIdIn(Set.of(1L))).thenReturn(List.of(item1));
+
+        // Act&Assert
+        assertThat(coalescer.load(1L)).contains(item1);
+    }
+
+    @Test
+    @DisplayName("読み込みの失敗を呼び出し元にそのまま投げるテスト")
+    void load_Failure() {
+        // Arrange
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, true, Duration.ofMillis(1), 100, TIMEOUT);
+        when(itemRepository.findValuesByIdIn(any())).thenThrow(new DataAccessResourceFailureException("DB down"));
+
+        // Act&Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> coalescer.load(1L));
+    }
+
+    @Test
+    @DisplayName("読み込みでErrorが発生しても、同じまとまりを待つ呼び出しが止まらないテスト")
+    void load_ErrorCompletesFollowers() throws Exception {
+        // Arrange: 2件を1回の読み込みにまとめ、その読み込みがErrorを投げる
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, true, Duration.ofMillis(200), 100, TIMEOUT);
+        when(itemRepository.findValuesByIdIn(any())).thenThrow(new StackOverflowError());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Optional<Item>>> results = new ArrayList<>();
+            for (Long id : List.of(1L, 2L)) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return coalescer.load(id);
+                }));
+            }
+            start.countDown();
+
+            // Act&Assert: どちらもErrorで終わり、待ち続けない
+            for (Future<Optional<Item>> result : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+                assertThat(e.getCause()).isInstanceOf(StackOverflowError.class);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("まとめた読み込みはプライマリで行うテスト")
+    void load_OnPrimary() {
+        // Arrange
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, true, Duration.ofMillis(1), 100, TIMEOUT);
+        List<Boolean> primaryRequired = new ArrayList<>();
+        when(itemRepository.findValuesByIdIn(Set.of(1L))).thenAnswer(invocation -> {
+            primaryRequired.add(ReadYourWrites.isPrimaryRequired());
+            return List.of();
+        });
+
+        // Act
+        coalescer.load(1L);
+
+        // Assert
+        assertThat(primaryRequired).containsExactly(true);
+        assertThat(ReadYourWrites.isPrimaryRequired()).isFalse();
+    }
+
+    @Test
+    @DisplayName("無効な場合はIDごとにすぐ読み込むテスト")
+    void load_Disabled() {
+        // Arrange
+        ItemLoadCoalescer coalescer = new ItemLoadCoalescer(itemRepository, false, Duration.ofMillis(1), 100, TIMEOUT);
+        when(itemRepository.findValueById(1L)).thenReturn(Optional.empty());
+
+        // Act&Assert
+        assertThat(coalescer.load(1L)).isEmpty();
+        verify(itemRepository, never()).findValuesByIdIn(any());
+    }
+}
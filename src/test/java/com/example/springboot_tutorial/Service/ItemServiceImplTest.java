@@ -1,20 +1,38 @@
 package com.example.springboot_tutorial.Service;
 
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
 import com.example.springboot_tutorial.exception.ResourceNotFoundException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
 import com.example.springboot_tutorial.repository.ItemRepository;
 import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.service.CatalogSnapshot;
+import com.example.springboot_tutorial.service.ItemCatalogIndex;
+import com.example.springboot_tutorial.service.ItemLoadCoalescer;
 import com.example.springboot_tutorial.service.ItemServiceImpl;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -27,6 +45,24 @@ public class ItemServiceImplTest {
     @Mock  // 偽物のItemRepositoryを作成
     private ItemRepository itemRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    @Mock  // 1件ずつの読み込み（同時に来た読み込みをまとめる部分はItemLoadCoalescerTestで確認する）
+    private ItemLoadCoalescer itemLoadCoalescer;
+
+    @Mock  // snapshot()はnullを返すため、索引が無効な場合と同じくDBから読み込む
+    private ItemCatalogIndex catalogIndex;
+
+    @Spy  // 本物のキャッシュを使い、呼び出しも検証できるようにする
+    private ItemCache itemCache = new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5));
+
+    @Spy  // 偽物のトランザクションマネージャーで、コールバックをそのまま実行する
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks  // モックを注入した本物のItemServiceImplを作成する
     private ItemServiceImpl itemService;
 
@@ -45,21 +81,75 @@ public class ItemServiceImplTest {
     @Test
     @DisplayName("全アイテムを取得するテスト")
     void findAll() {
-        // Arrange: アイテム2を作り、itemListを作成。findAll()したらitemListを返すよう設定
+        // Arrange: アイテム2を作り、itemListを作成。findAllValues()したらitemListを返すよう設定
         Item item2 = Item.builder()
                 .id(2L)
                 .name("テストアイテム2")
                 .price(3000)
                 .build();
         List<Item> itemList = Arrays.asList(item1, item2);
-        when(itemRepository.findAll()).thenReturn(itemList);
+        when(itemRepository.findAllValues()).thenReturn(itemList);
 
         // Act
         List<Item> result = itemService.findAll();
 
-        // Assert: リストのサイズが2件であることを確認 && findAllが1回呼ばれたことを確認
+        // Assert: リストのサイズが2件であることを確認 && findAllValuesが1回呼ばれたことを確認
         assertThat(result).hasSize(2);
-        verify(itemRepository, times(1)).findAll();
+        verify(itemRepository, times(1)).findAllValues();
+    }
+
+    @Test
+    @DisplayName("カタログ索引が有効な場合はDBにアクセスせずに全アイテムを取得するテスト")
+    void findAll_CatalogIndex() {
+        // Arrange: 索引にアイテム1・2が載っている
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(2);
+        builder.add(1L, "テストアイテム1", 2000, 0L);
+        builder.add(2L, "テストアイテム2", null, 0L);
+        when(catalogIndex.snapshot()).thenReturn(builder.build());
+
+        // Act
+        List<Item> result = itemService.findAll();
+
+        // Assert: 索引の内容がID順に返り、リポジトリは呼ばれない
+        assertThat(result).containsExactly(
+                Item.builder().id(1L).name("テストアイテム1").price(2000).version(0L).build(),
+                Item.builder().id(2L).name("テストアイテム2").version(0L).build());
+        verify(itemRepository, never()).findAllValues();
+    }
+
+    @Test
+    @DisplayName("アイテムをページ単位で取得するテスト")
+    void findPage() {
+        // Arrange: id=0より後ろを2件要求された時、item1とアイテム2を返すよう設定
+        Item item2 = Item.builder()
+                .id(2L)
+                .name("テストアイテム2")
+                .price(3000)
+                .build();
+        when(itemRepository.findValuesAfter(0L, Limit.of(2)))
+                .thenReturn(Arrays.asList(item1, item2));
+
+        // Act
+        ItemPage result = itemService.findPage(null, 2);
+
+        // Assert: 2件取得でき、ページが埋まっているので次のカーソルは最後のID
+        assertThat(result.items()).hasSize(2);
+        assertThat(result.nextCursor()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("アイテムをページ単位で取得するテスト(最終ページ)")
+    void findPage_LastPage() {
+        // Arrange: id=1より後ろを要求された時、空のリストを返すよう設定
+        when(itemRepository.findValuesAfter(1L, Limit.of(ItemServiceImpl.MAX_PAGE_SIZE)))
+                .thenReturn(List.of());
+
+        // Act: 上限を超えるサイズを指定
+        ItemPage result = itemService.findPage(1L, 100_000);
+
+        // Assert: 上限件数に丸められ、次のカーソルはnull
+        assertThat(result.items()).isEmpty();
+        assertThat(result.nextCursor()).isNull();
     }
 
     @Test
@@ -67,7 +157,7 @@ public class ItemServiceImplTest {
     void findById_Success() {
 
         // Arrange: id=1Lで呼び出されたらitem1オブジェクトが入ったOptionalを返すよう設定
-        when(itemRepository.findById(1L)).thenReturn(Optional.of(item1));
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
 
         // Act
         Item result = itemService.findById(1L);
@@ -75,7 +165,7 @@ public class ItemServiceImplTest {
         // Assert: idとnameをチェック && 1回呼び出しをチェック
         assertThat(result.getId()).isEqualTo(1L);
         assertThat(result.getName()).isEqualTo("テストアイテム1");
-        verify(itemRepository, times(1)).findById(1L);
+        verify(itemLoadCoalescer, times(1)).load(1L);
     }
 
     @Test
@@ -83,13 +173,81 @@ public class ItemServiceImplTest {
     void findByIdNotFound() {
 
         // Arrange: id=99Lで呼び出されたら中身が空のOptionalを返すよう設定
-        when(itemRepository.findById(99L)).thenReturn(Optional.empty());
+        when(itemLoadCoalescer.load(99L)).thenReturn(Optional.empty());
 
         // Act&Assert: 第2引数の処理を実行したときに、　第1引数で指定した例外がスローされることをチェック && 1回呼び出しをチェック
         assertThrows(ResourceNotFoundException.class, () -> {
             itemService.findById(99L);
         });
-        verify(itemRepository, times(1)).findById(99L);
+        verify(itemLoadCoalescer, times(1)).load(99L);
+    }
+
+    @Test
+    @DisplayName("同じIDを2回取得した時、2回目はキャッシュから返すテスト")
+    void findById_Cached() {
+        // Arrange
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+
+        // Act
+        itemService.findById(1L);
+        Item result = itemService.findById(1L);
+
+        // Assert: 2回目も同じ内容を返し、DBへのアクセスは1回だけ
+        assertThat(result).isEqualTo(item1);
+        verify(itemLoadCoalescer, times(1)).load(1L);
+        assertThat(itemCache.stats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("IDを複数指定して取得するテスト(キャッシュにないIDだけを1回で読み込む)")
+    void findByIds() {
+        // Arrange: id=1はキャッシュ済み
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        itemService.findById(1L);
+        Item item2 = Item.builder().id(2L).name("テストアイテム2").price(3000).build();
+        when(itemRepository.findValuesByIdIn(Set.of(2L, 99L))).thenReturn(List.of(item2));
+
+        // Act: 重複したID・存在しないIDを含む
+        List<Item> result = itemService.findByIds(List.of(2L, 1L, 99L, 2L));
+
+        // Assert: 指定した順に返り、存在しないIDは含まない
+        assertThat(result).containsExactly(item2, item1);
+        verify(itemRepository, times(1)).findValuesByIdIn(any());
+    }
+
+    @Test
+    @DisplayName("キャッシュに入れる値はレプリカではなくプライマリから読み込むテスト")
+    void findById_LoadedFromPrimary() {
+        // Arrange: 読み込んだ時点でプライマリが指定されていたかを記録する
+        List<Boolean> primaryRequired = new ArrayList<>();
+        when(itemLoadCoalescer.load(1L)).thenAnswer(invocation -> {
+            primaryRequired.add(ReadYourWrites.isPrimaryRequired());
+            return Optional.of(item1);
+        });
+        when(itemRepository.findValuesByIdIn(Set.of(2L))).thenAnswer(invocation -> {
+            primaryRequired.add(ReadYourWrites.isPrimaryRequired());
+            return List.of();
+        });
+
+        // Act
+        itemService.findById(1L);
+        itemService.findByIds(List.of(1L, 2L));
+
+        // Assert: 読み込みの後は元の設定（レプリカ）に戻る
+        assertThat(primaryRequired).containsExactly(true, true);
+        assertThat(ReadYourWrites.isPrimaryRequired()).isFalse();
+    }
+
+    @Test
+    @DisplayName("見つからなかったIDも短時間キャッシュするテスト")
+    void findByIdNotFound_Cached() {
+        // Arrange
+        when(itemLoadCoalescer.load(99L)).thenReturn(Optional.empty());
+
+        // Act&Assert: 2回とも例外になるが、DBへのアクセスは1回だけ
+        assertThrows(ResourceNotFoundException.class, () -> itemService.findById(99L));
+        assertThrows(ResourceNotFoundException.class, () -> itemService.findById(99L));
+        verify(itemLoadCoalescer, times(1)).load(99L);
     }
 
     @Test
@@ -136,19 +294,200 @@ public class ItemServiceImplTest {
         assertThat(result.getName()).isEqualTo("更新後アイテム");
         assertThat(result.getPrice()).isEqualTo(1500);
         verify(itemRepository, times(1)).findById(1L);
+
+        // 更新後の取得はDBにアクセスせず、キャッシュから更新後の値を返す
+        assertThat(itemService.findById(1L).getPrice()).isEqualTo(1500);
+        verify(itemRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("バージョンを指定してアイテムを更新するテスト(成功)")
+    void updateItem_WithVersion() {
+        // Arrange: バージョン3のid=1がキャッシュにあり、1件更新される
+        Item updateData = Item.builder()
+                .name("更新後アイテム")
+                .price(1500)
+                .build();
+        Item previousItem = item1.toBuilder().version(3L).build();
+        itemCache.put(previousItem);
+        when(itemRepository.updateIfVersionMatches(1L, 3L, "更新後アイテム", 1500)).thenReturn(1);
+
+        // Act
+        Item result = itemService.updateItem(1L, updateData, 3L);
+
+        // Assert: バージョンが1増え、事前のSELECTは行わない && キャッシュの値が更新前の値として通知される
+        assertThat(result.getVersion()).isEqualTo(4L);
+        assertThat(result.getPrice()).isEqualTo(1500);
+        verify(itemRepository, never()).findById(any());
+        verify(itemRepository, never()).findAllByIdForUpdate(any());
+        verify(eventPublisher, times(1)).publishEvent(ItemChangedEvent.updated(previousItem, result));
+    }
+
+    @Test
+    @DisplayName("バージョンを指定してアイテムを更新するテスト(キャッシュのバージョンが違う場合は更新前の値なしで通知)")
+    void updateItem_WithVersionStaleCache() {
+        // Arrange: キャッシュにあるのはバージョン2の値
+        Item updateData = Item.builder()
+                .name("更新後アイテム")
+                .price(1500)
+                .build();
+        itemCache.put(item1.toBuilder().version(2L).build());
+        when(itemRepository.updateIfVersionMatches(1L, 3L, "更新後アイテム", 1500)).thenReturn(1);
+
+        // Act
+        Item result = itemService.updateItem(1L, updateData, 3L);
+
+        // Assert: 別の状態の値を更新前の値として送らない（集計はDBから集計し直す）
+        verify(eventPublisher, times(1)).publishEvent(ItemChangedEvent.updated(null, result));
+    }
+
+    @Test
+    @DisplayName("バージョンを指定してアイテムを更新するテスト(失敗:バージョン違い)")
+    void updateItem_VersionConflict() {
+        // Arrange: 更新された行はないが、アイテムは存在する
+        Item updateData = Item.builder()
+                .name("更新後アイテム")
+                .price(1500)
+                .build();
+        when(itemRepository.updateIfVersionMatches(1L, 2L, "更新後アイテム", 1500)).thenReturn(0);
+        when(itemRepository.existsById(1L)).thenReturn(true);
+
+        // Act&Assert
+        assertThrows(VersionConflictException.class, () -> itemService.updateItem(1L, updateData, 2L));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("バージョンを指定してアイテムを更新するテスト(失敗:存在しない)")
+    void updateItem_NotFound() {
+        // Arrange: 更新された行がなく、アイテムも存在しない
+        when(itemRepository.updateIfVersionMatches(1L, 0L, "テストアイテム1", 2000)).thenReturn(0);
+        when(itemRepository.existsById(1L)).thenReturn(false);
+
+        // Act&Assert
+        assertThrows(ResourceNotFoundException.class, () -> itemService.updateItem(1L, item1, 0L));
+    }
+
+    @Test
+    @DisplayName("アイテムを検索するテスト(件数の上限と既定値の補完)")
+    void search() {
+        // Arrange
+        ItemSearchQuery query = new ItemSearchQuery("テスト", null, null, null, null, false, 5000);
+
+        // Act
+        itemService.search(query);
+
+        // Assert: 一致方法は前方一致、並びはID順、件数は1000件に丸めて渡される
+        verify(itemRepository, times(1)).search(new ItemSearchQuery("テスト",
+                ItemSearchQuery.NameMatch.PREFIX, null, null, ItemSearchQuery.SortKey.ID, false, 1000));
+    }
+
+    @Test
+    @DisplayName("アイテムを検索するテスト(失敗:価格の下限が上限より大きい)")
+    void search_InvalidPriceRange() {
+        // Arrange
+        ItemSearchQuery query = new ItemSearchQuery(null, null, 3000, 1000, null, false, 10);
+
+        // Act&Assert
+        assertThrows(IllegalArgumentException.class, () -> itemService.search(query));
+        verify(itemRepository, never()).search(any());
+    }
+
+    @Test
+    @DisplayName("価格だけを更新するテスト(write-behind有効:DBにはすぐ書き込まない)")
+    void updatePrice_Buffered() {
+        // Arrange: バッファが更新を受け付ける
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        when(priceUpdateBuffer.offer(item1, 1500)).thenReturn(item1.toBuilder().price(1500).version(1L).build());
+
+        // Act
+        Item result = itemService.updatePrice(1L, 1500);
+
+        // Assert: 新しい価格と進んだバージョンが返り、UPDATEは発行しない
+        assertThat(result.getPrice()).isEqualTo(1500);
+        assertThat(result.getVersion()).isEqualTo(1L);
+        verify(itemRepository, never()).updateIfVersionMatches(any(), any(), any(), any());
+        verify(itemRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("価格だけを更新するテスト(write-behind無効:キャッシュのバージョンで1文で更新)")
+    void updatePrice_Direct() {
+        // Arrange: バッファは無効
+        item1.setVersion(3L);
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        when(itemRepository.updateIfVersionMatches(1L, 3L, "テストアイテム1", 1500)).thenReturn(1);
+
+        // Act
+        Item result = itemService.updatePrice(1L, 1500);
+
+        // Assert
+        assertThat(result.getPrice()).isEqualTo(1500);
+        assertThat(result.getVersion()).isEqualTo(4L);
+    }
+
+    @Test
+    @DisplayName("書き込み待ちの価格が取得結果に反映されるテスト")
+    void findById_PendingPrice() {
+        // Arrange: バージョン3のid=1に、価格1500（書き込むとバージョン4）が書き込み待ち
+        item1.setVersion(3L);
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        when(priceUpdateBuffer.pendingPrice(1L)).thenReturn(new PriceUpdateBuffer.PendingPrice(1500, 4L));
+
+        // Act
+        Item result = itemService.findById(1L);
+
+        // Assert: 書き込み待ちの価格とバージョン（ETag）が返り、読み込んだエンティティは書き換えない
+        assertThat(result.getPrice()).isEqualTo(1500);
+        assertThat(result.getVersion()).isEqualTo(4L);
+        assertThat(item1.getPrice()).isEqualTo(2000);
+    }
+
+    @Test
+    @DisplayName("書き込み済みのバージョンを読み込んだ場合は、書き込み待ちの価格を重ねないテスト")
+    void findById_PendingPriceAlreadyWritten() {
+        // Arrange: 書き込みが終わった直後で、DBのバージョンが書き込み後のバージョンに達している
+        item1.setVersion(4L);
+        item1.setPrice(1500);
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        when(priceUpdateBuffer.pendingPrice(1L)).thenReturn(new PriceUpdateBuffer.PendingPrice(1500, 4L));
+
+        // Act
+        Item result = itemService.findById(1L);
+
+        // Assert
+        assertThat(result.getVersion()).isEqualTo(4L);
     }
 
     @Test
     @DisplayName("アイテムを削除するテスト")
     void deleteItem() {
 
-        // Arrange: id=1Lが存在した時にitem1を返すよう設定
-        when(itemRepository.findById(1L)).thenReturn(Optional.of(item1));
+        // Arrange: id=1Lが存在した時にitem1を返すよう設定 && IDで1件削除される
+        when(itemLoadCoalescer.load(1L)).thenReturn(Optional.of(item1));
+        when(itemRepository.deleteItemById(1L)).thenReturn(1);
 
         // Act
         itemService.deleteItem(1L);
 
         // Assert: 呼ばれた回数をチェック。削除することではなく呼び出すことがServiceの責務であるから
-        verify(itemRepository, times(1)).delete(item1);
+        // 読み込んだ値（バージョンが古い場合がある）をエンティティとして削除しない
+        verify(itemRepository, times(1)).deleteItemById(1L);
+        verify(itemRepository, never()).delete(any());
+        // 削除したことが通知される
+        verify(eventPublisher, times(1)).publishEvent(ItemChangedEvent.deleted(1L, item1));
+    }
+
+    @Test
+    @DisplayName("アイテムを削除するテスト(失敗:他のリクエストが先に削除していた)")
+    void deleteItem_AlreadyDeleted() {
+        // Arrange: キャッシュには残っているが、DBの行はもうない
+        itemCache.put(item1.toBuilder().version(0L).build());
+        when(itemRepository.deleteItemById(1L)).thenReturn(0);
+
+        // Act&Assert: 404になり、削除は通知されない && キャッシュからも消える
+        assertThrows(ResourceNotFoundException.class, () -> itemService.deleteItem(1L));
+        verify(eventPublisher, never()).publishEvent(any());
+        verify(itemCache, times(1)).evict(1L);
     }
 }
@@ -0,0 +1,53 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.service.ItemService;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 書き込み待ちの価格をDBに書いてから更新する流れを、本物のトランザクションとH2で確認する
+// 定期的な書き込みが動かないよう間隔を長くし、他のテストとデータベースを分ける
+@SpringBootTest(properties = {
+        "item.write-behind.enabled=true",
+        "item.write-behind.flush-interval=1h",
+        "spring.datasource.url=jdbc:h2:mem:write-behind"})
+class ItemServiceWriteBehindTest {
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("書き込み待ちの価格があるアイテムを更新（PUT）すると、価格を書き込んでから更新されるテスト")
+    void updateItem_AfterBufferedPrice() {
+        // Arrange: 価格の更新はバッファに入り、DBにはまだ書き込まれていない
+        Item item = itemService.findAll().get(0);
+        Item buffered = itemService.updatePrice(item.getId(), 6000);
+        assertThat(priceUpdateBuffer.pendingPrice(item.getId())).isNotNull();
+
+        // Act
+        Item updated = itemService.updateItem(item.getId(), Item.builder().name("更新後アイテム").price(7000).build());
+
+        // Assert: バッファの書き込みと更新の両方がコミットされ、バージョンは2つ進む
+        assertThat(updated.getVersion()).isEqualTo(buffered.getVersion() + 1);
+        assertThat(priceUpdateBuffer.pendingPrice(item.getId())).isNull();
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT name, price, version FROM item WHERE id = ?", item.getId());
+        assertThat(row).containsEntry("NAME", "更新後アイテム").containsEntry("PRICE", 7000)
+                .containsEntry("VERSION", updated.getVersion());
+        assertThat(itemService.findById(item.getId())).isEqualTo(updated);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemStats;
+import com.example.springboot_tutorial.service.ItemStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemStatisticsTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ItemStatistics itemStatistics;
+
+    private Item item1;
+    private Item item2;
+
+    // 起動時の集計結果: 価格帯0（0〜999）に500円が1件、価格帯1（1000〜1999）に1500円が1件
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        item1 = Item.builder().id(1L).name("テストアイテム1").price(500).version(0L).build();
+        item2 = Item.builder().id(2L).name("テストアイテム2").price(1500).version(0L).build();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new Object[]{0L, 1L, 500L, 500, 500},
+                new Object[]{1L, 1L, 1500L, 1500, 1500}));
+        itemStatistics = new ItemStatistics(jdbcTemplate, 1000);
+        itemStatistics.onApplicationReady();
+    }
+
+    @Test
+    @DisplayName("起動時にDBから集計するテスト")
+    void stats_Rebuilt() {
+        // Act
+        ItemStats stats = itemStatistics.stats();
+
+        // Assert
+        assertThat(stats.count()).isEqualTo(2);
+        assertThat(stats.sum()).isEqualTo(2000);
+        assertThat(stats.min()).isEqualTo(500);
+        assertThat(stats.max()).isEqualTo(1500);
+        assertThat(stats.average()).isEqualTo(1000.0);
+        assertThat(stats.buckets()).containsExactly(
+                new ItemStats.Bucket(0, 1000, 1), new ItemStats.Bucket(1000, 2000, 1));
+    }
+
+    @Test
+    @DisplayName("登録・更新を差分で反映するテスト(DBにアクセスしない)")
+    void onItemChanged_Incremental() {
+        // Arrange
+        Item newItem = Item.builder().id(3L).name("新規アイテム").price(2500).version(0L).build();
+        Item updatedItem = item2.toBuilder().price(700).version(1L).build();
+
+        // Act
+        itemStatistics.onItemChanged(ItemChangedEvent.created(newItem));
+        itemStatistics.onItemChanged(ItemChangedEvent.updated(item2, updatedItem));
+        ItemStats stats = itemStatistics.stats();
+
+        // Assert: 500円・700円・2500円の3件 && 集計し直していない
+        assertThat(stats.count()).isEqualTo(3);
+        assertThat(stats.sum()).isEqualTo(3700);
+        assertThat(stats.max()).isEqualTo(2500);
+        assertThat(stats.buckets()).containsExactly(
+                new ItemStats.Bucket(0, 1000, 2), new ItemStats.Bucket(2000, 3000, 1));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    @DisplayName("最小値のアイテムを削除すると最小値・最大値だけを読み直すテスト")
+    void onItemChanged_DeleteMin() throws Exception {
+        // Arrange: 残っているのは1500円の1件
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getObject(1, Integer.class)).thenReturn(1500);
+        when(resultSet.getObject(2, Integer.class)).thenReturn(1500);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        // Act
+        itemStatistics.onItemChanged(ItemChangedEvent.deleted(1L, item1));
+        ItemStats stats = itemStatistics.stats();
+
+        // Assert
+        assertThat(stats.count()).isEqualTo(1);
+        assertThat(stats.min()).isEqualTo(1500);
+        assertThat(stats.buckets()).containsExactly(new ItemStats.Bucket(1000, 2000, 1));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    @DisplayName("一括取り込みの後は全体を集計し直すテスト")
+    void onItemsImported() {
+        // Act
+        itemStatistics.onItemsImported(new ItemsImportedEvent(10));
+        itemStatistics.stats();
+
+        // Assert: 起動時と合わせて2回集計する
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    @DisplayName("集計し直している間も変更を受け付け、集計中の変更があれば結果を使い回さないテスト")
+    @SuppressWarnings("unchecked")
+    void stats_ChangedDuringRebuild() {
+        // Arrange: 集計のSQLを実行している間に、別スレッドで登録が通知される
+        Item newItem = Item.builder().id(3L).name("新規アイテム").price(2500).version(0L).build();
+        itemStatistics.onItemsImported(new ItemsImportedEvent(1));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> itemStatistics.onItemChanged(ItemChangedEvent.created(newItem)))
+                    .get(5, TimeUnit.SECONDS);  // 集計中にthisを持っていると、ここで待ち続ける
+            return List.of(new Object[]{0L, 1L, 500L, 500, 500});
+        });
+
+        // Act
+        ItemStats first = itemStatistics.stats();
+        itemStatistics.stats();
+
+        // Assert: 1回目はDBから読んだ値を返す && 使い回さないため、2回目も集計し直す（起動時と合わせて3回）
+        assertThat(first.count()).isEqualTo(1);
+        verify(jdbcTemplate, times(3)).query(anyString(), any(RowMapper.class));
+    }
+}
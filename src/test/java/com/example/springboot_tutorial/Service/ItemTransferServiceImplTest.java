@@ -0,0 +1,111 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemsImportedEvent;
+import com.example.springboot_tutorial.service.ItemTransferServiceImpl;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemTransferServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock  // トランザクションの開始・コミットは何もしない
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> rows;
+
+    private ItemTransferServiceImpl itemTransferService;
+
+    // チャンクサイズ2で組み立て、チャンクをまたぐ処理を確認できるようにする
+    @BeforeEach
+    void setUp() {
+        itemTransferService = new ItemTransferServiceImpl(jdbcTemplate, new TransactionTemplate(transactionManager),
+                new ObjectMapper(), new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5)),
+                priceUpdateBuffer, eventPublisher, 2);
+    }
+
+    @Test
+    @DisplayName("gzip圧縮したNDJSONをチャンクごとに取り込むテスト")
+    void importFrom_Gzip() throws IOException {
+        // Arrange: 3行（1行は知らない項目を含む）
+        String ndjson = """
+                {"id":1,"name":"item-1","price":100,"version":0}
+                {"id":2,"name":"item-2","price":200,"version":3,"extra":{"a":1}}
+                {"id":3,"name":"item-3","price":null}
+                """;
+
+        // Act
+        long imported = itemTransferService.importFrom(gzip(ndjson));
+
+        // Assert: 2件と1件の2回に分けて送り、取り込み後に通知する
+        assertThat(imported).isEqualTo(3);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        // 最後のチャンクはnullの価格・省略されたバージョン（0）をそのまま渡す
+        assertThat(rows.getValue()).singleElement()
+                .satisfies(row -> assertThat(row).containsExactly(3L, "item-3", null, 0L));
+        verify(eventPublisher, times(1)).publishEvent(new ItemsImportedEvent(3));
+    }
+
+    @Test
+    @DisplayName("IDのない行があった場合に取り込みを中断するテスト(それまでのチャンクはコミット済み)")
+    void importFrom_MissingId() {
+        // Arrange: 3行目にIDがない
+        String ndjson = """
+                {"id":1,"name":"item-1","price":100}
+                {"id":2,"name":"item-2","price":200}
+                {"name":"item-3","price":300}
+                """;
+        InputStream in = new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+
+        // Act&Assert
+        assertThrows(JsonParseException.class, () -> itemTransferService.importFrom(in));
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+        verify(eventPublisher, times(1)).publishEvent(new ItemsImportedEvent(2));
+    }
+
+    private static InputStream gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.repository.ItemRepository;
+import com.example.springboot_tutorial.service.CatalogVersion;
+import com.example.springboot_tutorial.service.PriceUpdateBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PriceUpdateBufferTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock  // トランザクションの開始・コミットは何もしない
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    // 定期的な書き込みが動かないよう間隔を長くし、flushはテストから呼ぶ
+    @BeforeEach
+    void setUp() {
+        priceUpdateBuffer = new PriceUpdateBuffer(itemRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager),
+                new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5)),
+                new CatalogVersion(), eventPublisher, true, 100, 100, Duration.ofHours(1));
+        priceUpdateBuffer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        priceUpdateBuffer.stop();
+    }
+
+    @Test
+    @DisplayName("同じアイテムへの更新が最後の値1つにまとまるテスト")
+    void offer_Coalesce() {
+        // Act
+        Item first = priceUpdateBuffer.offer(item(1L, 1000, 3L), 1000);
+        Item second = priceUpdateBuffer.offer(first, 1200);
+
+        // Assert: 書き込み待ちは1件で、最後の価格が残る && 更新ごとにバージョンが進む
+        assertThat(first.getVersion()).isEqualTo(4L);
+        assertThat(second.getVersion()).isEqualTo(5L);
+        assertThat(priceUpdateBuffer.pendingPrice(1L)).isEqualTo(new PriceUpdateBuffer.PendingPrice(1200, 5L));
+        assertThat(priceUpdateBuffer.stats().pending()).isEqualTo(1);
+        assertThat(priceUpdateBuffer.stats().coalesced()).isEqualTo(1);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("書き込み待ちの価格を1回のJDBCバッチで書き込むテスト")
+    void flush() {
+        // Arrange: id=1のみ存在する
+        Item previousItem = Item.builder().id(1L).name("テストアイテム1").price(1000).version(1L).build();
+        when(itemRepository.findAllByIdForUpdate(anyList())).thenReturn(List.of(previousItem));
+        priceUpdateBuffer.offer(previousItem, 1200);
+        priceUpdateBuffer.offer(item(2L, 2000, 0L), 3000);
+
+        // Act
+        int written = priceUpdateBuffer.flush();
+
+        // Assert: 2件をまとめて送り、書き込み後はバッファが空になる && 変更前後の値が通知される
+        assertThat(written).isEqualTo(2);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), eq(2), any());
+        assertThat(priceUpdateBuffer.hasPending()).isFalse();
+        Item updatedItem = previousItem.toBuilder().price(1200).version(2L).build();
+        verify(eventPublisher, times(1)).publishEvent(ItemChangedEvent.updated(previousItem, updatedItem));
+    }
+
+    @Test
+    @DisplayName("破棄した価格は書き込まないテスト")
+    void discard() {
+        // Arrange
+        priceUpdateBuffer.offer(item(1L, 1000, 0L), 1200);
+
+        // Act
+        priceUpdateBuffer.discard(1L);
+
+        // Assert
+        assertThat(priceUpdateBuffer.pendingPrice(1L)).isNull();
+        assertThat(priceUpdateBuffer.flush()).isZero();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("上限に達していて書き込みにも失敗した場合は、バッファに入れないテスト")
+    void offer_FullAndFlushFailed() {
+        // Arrange: 上限1件のバッファに1件入っていて、書き込みは失敗する
+        PriceUpdateBuffer fullBuffer = new PriceUpdateBuffer(itemRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager),
+                new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5)),
+                new CatalogVersion(), eventPublisher, true, 1, 100, Duration.ofHours(1));
+        fullBuffer.start();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Database is down."));
+        fullBuffer.offer(item(1L, 1000, 0L), 1200);
+
+        // Act
+        Item accepted = fullBuffer.offer(item(2L, 2000, 0L), 3000);
+
+        // Assert: 呼び出し元ですぐに書き込むようnullを返し、書き込み待ちは増えない
+        assertThat(accepted).isNull();
+        assertThat(fullBuffer.pendingPrice(2L)).isNull();
+        assertThat(fullBuffer.stats().pending()).isEqualTo(1);
+        assertThat(fullBuffer.stats().failures()).isEqualTo(1);
+        fullBuffer.stop();
+    }
+
+    @Test
+    @DisplayName("停止した後の更新はバッファに入れないテスト")
+    void offer_AfterStop() {
+        // Arrange
+        priceUpdateBuffer.stop();
+
+        // Act
+        Item accepted = priceUpdateBuffer.offer(item(1L, 1000, 0L), 1200);
+
+        // Assert: 呼び出し元ですぐに書き込む
+        assertThat(accepted).isNull();
+        assertThat(priceUpdateBuffer.hasPending()).isFalse();
+    }
+
+    private static Item item(Long id, int price, long version) {
+        return Item.builder().id(id).name("テストアイテム" + id).price(price).version(version).build();
+    }
+}
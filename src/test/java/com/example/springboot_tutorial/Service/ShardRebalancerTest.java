@@ -0,0 +1,114 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.config.ItemShards;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ShardRebalance;
+import com.example.springboot_tutorial.model.ShardStatus;
+import com.example.springboot_tutorial.service.ShardRebalancer;
+import com.example.springboot_tutorial.service.ShardedIdGenerator;
+import com.example.springboot_tutorial.service.ShardedItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ShardRebalancerTest {
+
+    private String prefix;
+    private List<ItemShards> opened;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "rebalance-" + UUID.randomUUID();
+        opened = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(shards -> shards.all().forEach(shard -> shard.jdbc().execute("SHUTDOWN")));
+    }
+
+    @Test
+    @DisplayName("追加したシャードにバケットを移動し、移動後も全アイテムを取得できるテスト")
+    void rebalance_AddedShard() {
+        // Arrange: 2台で登録してから、3台目を加えて起動し直す
+        ShardedItemService twoShards = service(shards(2));
+        List<Item> created = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            created.add(twoShards.createItem(Item.builder().name("テストアイテム" + i).price(i).build()));
+        }
+        ItemShards threeShards = shards(3);
+        ShardRebalancer rebalancer = new ShardRebalancer(threeShards);
+        assertThat(rebalancer.status()).extracting(ShardStatus::buckets).containsExactly(512, 512, 0);
+
+        // Act
+        ShardRebalance planned = rebalancer.rebalance(true);
+        ShardRebalance result = rebalancer.rebalance(false);
+
+        // Assert
+        assertThat(planned.moves()).hasSize(341).allSatisfy(move -> assertThat(move.to()).isEqualTo(2));
+        assertThat(result.moves()).isEqualTo(planned.moves());
+        assertThat(rebalancer.status()).extracting(ShardStatus::buckets).containsExactly(342, 341, 341);
+        assertThat(rebalancer.status()).extracting(ShardStatus::items).containsExactly(
+                count(created, threeShards, 0), count(created, threeShards, 1), count(created, threeShards, 2));
+        assertThat(result.rowsMoved()).isEqualTo(count(created, threeShards, 2));
+        assertThat(service(threeShards).findAll()).containsExactlyInAnyOrderElementsOf(created);
+        // 均等になった後は移動しない
+        assertThat(rebalancer.plan()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("中断した移動で持ち主でないシャードに残った行を削除するテスト")
+    void rebalance_RemovesOrphans() {
+        // Arrange: シャード0のバケットの行を、コピーだけしたようにシャード1にも入れておく
+        ItemShards shards = shards(2);
+        ShardedItemService service = service(shards);
+        Item item = service.createItem(Item.builder().name("テストアイテム").price(100).build());
+        int bucket = ShardedIdGenerator.bucketOf(item.getId());
+        int owner = shards.owners()[bucket];
+        shards.get(1 - owner).jdbc().update("INSERT INTO item (id, name, price, version, bucket) VALUES (?, ?, ?, ?, ?)",
+                item.getId(), item.getName(), item.getPrice(), item.getVersion(), bucket);
+        assertThat(service.findAll()).containsExactly(item);  // 同じ行は1件にまとめて返す
+
+        // Act
+        ShardRebalance result = new ShardRebalancer(shards).rebalance(false);
+
+        // Assert
+        assertThat(result.orphansRemoved()).isEqualTo(1);
+        assertThat(result.moves()).isEmpty();
+        assertThat(service.findAll()).containsExactly(item);
+    }
+
+    // 同じ名前のデータベースを使うため、台数を増やして作り直すとシャードを追加したことになる
+    private ItemShards shards(int count) {
+        List<DriverManagerDataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            dataSources.add(new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + prefix + "-" + i + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        }
+        ItemShards shards = new ItemShards(dataSources);
+        opened.add(shards);
+        return shards;
+    }
+
+    private static ShardedItemService service(ItemShards shards) {
+        return new ShardedItemService(shards, new ShardedIdGenerator(),
+                new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5)), mock(ApplicationEventPublisher.class));
+    }
+
+    private static long count(List<Item> items, ItemShards shards, int shard) {
+        int[] owners = shards.owners();
+        return items.stream().filter(item -> owners[ShardedIdGenerator.bucketOf(item.getId())] == shard).count();
+    }
+}
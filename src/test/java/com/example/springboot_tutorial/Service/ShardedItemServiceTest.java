@@ -0,0 +1,177 @@
+package com.example.springboot_tutorial.Service;
+
+import com.example.springboot_tutorial.cache.ItemCache;
+import com.example.springboot_tutorial.config.ItemShards;
+import com.example.springboot_tutorial.event.ItemChangedEvent;
+import com.example.springboot_tutorial.exception.ResourceNotFoundException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemSummary;
+import com.example.springboot_tutorial.service.ShardedIdGenerator;
+import com.example.springboot_tutorial.service.ShardedItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ShardedItemServiceTest {
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ItemShards itemShards;
+    private ShardedItemService itemService;
+
+    // シャード2台の代わりに、別々のH2インメモリデータベースを使う
+    @BeforeEach
+    void setUp() {
+        String prefix = "sharded-" + UUID.randomUUID();
+        itemShards = new ItemShards(List.of(database(prefix + "-0"), database(prefix + "-1")));
+        itemService = new ShardedItemService(itemShards, new ShardedIdGenerator(),
+                new ItemCache(100, Duration.ofMinutes(1), Duration.ofSeconds(5)), eventPublisher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        itemShards.all().forEach(shard -> shard.jdbc().execute("SHUTDOWN"));
+    }
+
+    @Test
+    @DisplayName("登録したアイテムがIDのバケットを持つシャードだけに保存されるテスト")
+    void createItem_RoutedByBucket() {
+        // Act
+        List<Item> created = createItems(20);
+
+        // Assert
+        int[] owners = itemShards.owners();
+        for (Item item : created) {
+            int owner = owners[ShardedIdGenerator.bucketOf(item.getId())];
+            for (ItemShards.Shard shard : itemShards.all()) {
+                Long count = shard.jdbc().queryForObject("SELECT COUNT(*) FROM item WHERE id = ?", Long.class, item.getId());
+                assertThat(count).isEqualTo(shard.index() == owner ? 1L : 0L);
+            }
+            assertThat(itemService.findById(item.getId())).isEqualTo(item);
+        }
+        // 20件が1台に偏らず、両方のシャードに分かれていること
+        assertThat(itemShards.all()).allSatisfy(shard ->
+                assertThat(shard.jdbc().queryForObject("SELECT COUNT(*) FROM item", Long.class)).isPositive());
+        verify(eventPublisher, times(20)).publishEvent(any(ItemChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("全シャードの一覧・ページをID順にまとめて返すテスト")
+    void findAllAndPage_MergedById() {
+        // Arrange
+        List<Long> ids = createItems(30).stream().map(Item::getId).sorted().toList();
+
+        // Act
+        List<Item> all = itemService.findAll();
+        ItemPage first = itemService.findPage(null, 10);
+        ItemPage second = itemService.findPage(first.nextCursor(), 10);
+        List<Long> streamed = new ArrayList<>();
+        itemService.streamAll(item -> streamed.add(item.getId()));
+
+        // Assert
+        assertThat(all).extracting(Item::getId).containsExactlyElementsOf(ids);
+        assertThat(first.items()).extracting(Item::getId).containsExactlyElementsOf(ids.subList(0, 10));
+        assertThat(second.items()).extracting(Item::getId).containsExactlyElementsOf(ids.subList(10, 20));
+        assertThat(streamed).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    @DisplayName("全シャードの検索結果を価格の降順にまとめ、件数で切るテスト")
+    void search_MergedByPrice() {
+        // Arrange
+        List<Item> created = createItems(30);
+        List<Long> expected = created.stream()
+                .filter(item -> item.getPrice() >= 100)
+                .sorted(Comparator.comparing(Item::getPrice).thenComparing(Item::getId).reversed())
+                .limit(5)
+                .map(Item::getId)
+                .toList();
+
+        // Act
+        List<ItemSummary> result = itemService.search(new ItemSearchQuery(
+                null, null, 100, null, ItemSearchQuery.SortKey.PRICE, true, 5));
+
+        // Assert
+        assertThat(result).extracting(ItemSummary::id).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("IDを複数指定すると、シャードをまたいで指定した順に返すテスト")
+    void findByIds_AcrossShards() {
+        // Arrange
+        List<Long> ids = createItems(10).stream().map(Item::getId).toList().reversed();
+        List<Long> requested = new ArrayList<>(ids);
+        requested.add(999L);  // 存在しないID
+
+        // Act
+        List<Item> result = itemService.findByIds(requested);
+
+        // Assert
+        assertThat(result).extracting(Item::getId).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    @DisplayName("更新でバージョンが増え、古いバージョンでの更新は失敗するテスト")
+    void updateItem_Version() {
+        // Arrange
+        Item item = createItems(1).get(0);
+
+        // Act
+        Item updated = itemService.updateItem(item.getId(), item.toBuilder().name("更新後").build(), 0L);
+
+        // Assert
+        assertThat(updated.getVersion()).isEqualTo(1L);
+        assertThat(itemService.findById(item.getId()).getName()).isEqualTo("更新後");
+        assertThrows(VersionConflictException.class,
+                () -> itemService.updateItem(item.getId(), item.toBuilder().name("古い更新").build(), 0L));
+    }
+
+    @Test
+    @DisplayName("削除したアイテムは取得できないテスト")
+    void deleteItem_Removed() {
+        // Arrange
+        Item item = createItems(1).get(0);
+
+        // Act
+        itemService.deleteItem(item.getId());
+
+        // Assert
+        assertThrows(ResourceNotFoundException.class, () -> itemService.findById(item.getId()));
+        assertThat(itemService.findAll()).isEmpty();
+    }
+
+    private List<Item> createItems(int count) {
+        List<Item> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            created.add(itemService.createItem(Item.builder().name("テストアイテム" + i).price(i * 10).build()));
+        }
+        return created;
+    }
+
+    private static DriverManagerDataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
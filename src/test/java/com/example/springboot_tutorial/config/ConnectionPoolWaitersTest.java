@@ -0,0 +1,73 @@
+package com.example.springboot_tutorial.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionPoolWaitersTest {
+
+    @Mock
+    private ObjectProvider<DataSource> dataSources;
+
+    @Mock
+    private ObjectProvider<ReplicaPools> replicaPools;
+
+    @Mock
+    private ObjectProvider<ItemShards> itemShards;
+
+    @Test
+    @DisplayName("DataSourceが複数あっても、すべての待ちを合計するテスト")
+    void getAsInt_MultipleDataSources() throws Exception {
+        // Arrange: 許可が0件なので、取得しようとしたスレッドはそれぞれのDataSourceで待つ
+        ConcurrencyLimitingDataSource first = new ConcurrencyLimitingDataSource(mock(DataSource.class), 0, Duration.ofMinutes(1));
+        ConcurrencyLimitingDataSource second = new ConcurrencyLimitingDataSource(mock(DataSource.class), 0, Duration.ofMinutes(1));
+        when(dataSources.orderedStream()).thenReturn(Stream.of(first, second));
+        ConnectionPoolWaiters waiters = new ConnectionPoolWaiters(dataSources, replicaPools, itemShards);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(() -> first.getConnection());
+            executor.submit(() -> second.getConnection());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (first.getQueueLength() + second.getQueueLength() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // Act&Assert
+            assertThat(waiters.getAsInt()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("プールが見つからなかった結果も覚えておき、呼び出しのたびに探さないテスト")
+    void getAsInt_NoPoolResolvedOnce() {
+        // Arrange
+        when(dataSources.orderedStream()).thenReturn(Stream.empty());
+        ConnectionPoolWaiters waiters = new ConnectionPoolWaiters(dataSources, replicaPools, itemShards);
+
+        // Act
+        int firstCall = waiters.getAsInt();
+        int secondCall = waiters.getAsInt();
+
+        // Assert
+        assertThat(firstCall).isZero();
+        assertThat(secondCall).isZero();
+        verify(dataSources, times(1)).orderedStream();
+        verify(replicaPools, times(1)).ifAvailable(any());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springboot_tutorial.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+
+    // プライマリとレプリカ2台の代わりに別々のH2データベースを使い、どこに接続したかを表に入れておく
+    @BeforeEach
+    void setUp() {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+                database("primary"), List.of(database("replica1"), database("replica2")));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    @DisplayName("読み込み専用トランザクションはレプリカを順番に使うテスト")
+    void readOnly_Replicas() {
+        // Act&Assert
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase())).isEqualTo("replica1");
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase())).isEqualTo("replica2");
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase())).isEqualTo("replica1");
+    }
+
+    @Test
+    @DisplayName("読み書きするトランザクションはプライマリを使うテスト")
+    void readWrite_Primary() {
+        // Act&Assert
+        assertThat(readWriteTransaction.execute(status -> currentDatabase())).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("直前に書き込んだ場合は読み込み専用でもプライマリを使うテスト")
+    void readOnly_PrimaryRequired() {
+        // Arrange
+        ReadYourWrites.setPrimaryRequired(true);
+
+        // Act&Assert
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase())).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("書き込んだユーザーだけが一定時間プライマリで読むテスト")
+    void readYourWrites_Window() {
+        // Arrange
+        ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1));
+        ReadYourWrites expired = new ReadYourWrites(Duration.ZERO);
+
+        // Act
+        readYourWrites.recordWrite("user");
+        expired.recordWrite("user");
+
+        // Assert
+        assertThat(readYourWrites.wroteRecently("user")).isTrue();
+        assertThat(readYourWrites.wroteRecently("other")).isFalse();
+        assertThat(expired.wroteRecently("user")).isFalse();
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DriverManagerDataSource database(String name) {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM marker");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", name);
+        return dataSource;
+    }
+}
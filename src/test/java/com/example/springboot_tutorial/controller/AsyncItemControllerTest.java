@@ -0,0 +1,130 @@
+package com.example.springboot_tutorial.controller;
+
+import com.example.springboot_tutorial.exception.ResourceNotFoundException;
+import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.service.ItemAsyncService;
+import com.example.springboot_tutorial.service.ItemService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AsyncItemController.class) // AsyncItemControllerのみをテスト対象にする
+class AsyncItemControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ItemAsyncService itemAsyncService;
+
+    @MockBean
+    private ItemService itemService;
+
+    private Item item1;
+
+    @BeforeEach
+    void setUp() {
+        item1 = Item.builder()
+                .id(1L)
+                .name("テストアイテム1")
+                .price(1000)
+                .version(0L)
+                .build();
+    }
+
+    @Test
+    @DisplayName("指定したIDのアイテムを非同期で1件取得するAPIのテスト")
+    void getItemById() throws Exception {
+        // Arrange
+        when(itemAsyncService.findById(1L)).thenReturn(CompletableFuture.completedFuture(item1));
+
+        // Act: 非同期処理として開始される
+        MvcResult result = mockMvc.perform(get("/async/items/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert: 結果を受け取ってからレスポンスが書き出される
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.name", is("テストアイテム1")));
+    }
+
+    @Test
+    @DisplayName("存在しないIDを指定した場合に404を返すAPIのテスト")
+    void getItemById_NotFound() throws Exception {
+        // Arrange: 非同期処理が例外で終わる
+        when(itemAsyncService.findById(99L)).thenReturn(
+                CompletableFuture.failedFuture(new ResourceNotFoundException("Item not found with id: 99")));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/async/items/99"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert: 同期版と同じステータスコード
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("If-Matchを指定してアイテムを非同期で更新するAPIのテスト")
+    void updateItemWithIfMatch() throws Exception {
+        // Arrange: ETagのバージョンがServiceに渡される
+        Item updatedItem = item1.toBuilder().price(1500).version(1L).build();
+        when(itemAsyncService.updateItem(eq(1L), any(Item.class), eq(0L)))
+                .thenReturn(CompletableFuture.completedFuture(updatedItem));
+
+        // Act
+        MvcResult result = mockMvc.perform(put("/async/items/1")
+                        .header("If-Match", "\"0\"")
+                        .contentType("application/json")
+                        .content("{\"name\":\"テストアイテム1\",\"price\":1500}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+    }
+
+    @Test
+    @DisplayName("全アイテムをページ単位でNDJSON形式で返すAPIのテスト")
+    void streamItems() throws Exception {
+        // Arrange: 1ページ目の続きに2ページ目がある（NDJSONは文字コードの指定がないため英数字の名前にする）
+        Item first = Item.builder().id(1L).name("item1").price(1000).version(0L).build();
+        Item second = Item.builder().id(2L).name("item2").price(2000).version(0L).build();
+        when(itemService.findPage(null, 1)).thenReturn(new ItemPage(List.of(first), 1L));
+        when(itemService.findPage(1L, 1)).thenReturn(new ItemPage(List.of(second), null));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/async/items/stream").param("pageSize", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert: 1行1アイテム、ページを順に読み込む
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"item1\",\"price\":1000,\"version\":0}\n"
+                                + "{\"id\":2,\"name\":\"item2\",\"price\":2000,\"version\":0}\n"));
+        verify(itemService, times(2)).findPage(any(), eq(1));
+    }
+}
@@ -1,20 +1,40 @@
 package com.example.springboot_tutorial.controller;
 
+import com.example.springboot_tutorial.config.ReadYourWrites;
+import com.example.springboot_tutorial.exception.InvalidRequestException;
+import com.example.springboot_tutorial.exception.VersionConflictException;
 import com.example.springboot_tutorial.model.Item;
+import com.example.springboot_tutorial.model.ItemBatchResult;
+import com.example.springboot_tutorial.model.ItemPage;
+import com.example.springboot_tutorial.model.ItemSearchQuery;
+import com.example.springboot_tutorial.model.ItemStats;
+import com.example.springboot_tutorial.model.ItemSummary;
+import com.example.springboot_tutorial.service.CatalogVersion;
+import com.example.springboot_tutorial.service.ItemBatchService;
 import com.example.springboot_tutorial.service.ItemService;
+import com.example.springboot_tutorial.service.ItemStatistics;
+import com.example.springboot_tutorial.service.ItemTransferService;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,6 +53,21 @@ class ItemControllerTest {
     @MockBean
     private ItemService itemService;
 
+    @MockBean
+    private ItemBatchService itemBatchService;
+
+    @MockBean
+    private ItemTransferService itemTransferService;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @MockBean
+    private ItemStatistics itemStatistics;
+
+    @MockBean
+    private ItemChangeStream itemChangeStream;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -51,6 +86,8 @@ class ItemControllerTest {
                 .name("テストアイテム2")
                 .price(2000)
                 .build();
+        when(catalogVersion.eTag()).thenReturn("W/\"v1\"");
+        when(catalogVersion.lastModified()).thenReturn(1_700_000_000_000L);
     }
 
     @Test
@@ -69,6 +106,149 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$[1].name", is("テストアイテム2"))); // 2番目の要素の名前チェック
     }
 
+    @Test
+    @DisplayName("Acceptヘッダで指定したCBOR形式で全アイテムを取得するAPIのテスト")
+    void getItems_Cbor() throws Exception {
+        // Arrange
+        when(itemService.findAll()).thenReturn(Arrays.asList(item1, item2));
+
+        // Act
+        byte[] body = mockMvc.perform(get("/items").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert: JSONと同じ内容として読める
+        JsonNode items = new CBORMapper().readTree(body);
+        assertThat(items).hasSize(2);
+        assertThat(items.get(0).get("name").asText()).isEqualTo("テストアイテム1");
+    }
+
+    @Test
+    @DisplayName("一覧に変更がない場合に304を返すAPIのテスト")
+    void getItems_NotModified() throws Exception {
+        // Act&Assert: 前回と同じETagを送ると、一覧を読み込まずに304を返す
+        mockMvc.perform(get("/items").header("If-None-Match", "W/\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"v1\""));
+        verify(itemService, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("IDを複数指定してアイテムを取得するAPIのテスト")
+    void getItemsByIds() throws Exception {
+        // Arrange
+        when(itemService.findByIds(List.of(2L, 1L))).thenReturn(Arrays.asList(item2, item1));
+
+        // Act&Assert: 一覧の取得ではなく、指定したIDの取得が呼ばれる
+        mockMvc.perform(get("/items").param("ids", "2,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("テストアイテム2")));
+        verify(itemService, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("アイテムに変更がない場合に304を返すAPIのテスト")
+    void getItemById_NotModified() throws Exception {
+        // Arrange: バージョン2のアイテムを返すよう設定
+        item1.setVersion(2L);
+        when(itemService.findById(1L)).thenReturn(item1);
+
+        // Act&Assert
+        mockMvc.perform(get("/items/{id}", 1L).header("If-None-Match", "\"2\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("アイテムをページ単位で取得するAPIのテスト")
+    void getItemPage() throws Exception {
+        // Arrange: after=1, size=1で呼ばれた時、item2と次のカーソルを返すよう設定
+        when(itemService.findPage(1L, 1)).thenReturn(new ItemPage(List.of(item2), 2L));
+
+        // Act&Assert
+        mockMvc.perform(get("/items/page")
+                        .param("after", "1")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name", is("テストアイテム2")))
+                .andExpect(jsonPath("$.nextCursor", is(2)));
+    }
+
+    @Test
+    @DisplayName("価格の集計を取得するAPIのテスト")
+    void getItemStats() throws Exception {
+        // Arrange
+        when(itemStatistics.stats()).thenReturn(new ItemStats(2, 2, 3000, 1000, 2000, 1500.0, 1000,
+                List.of(new ItemStats.Bucket(1000, 2000, 1), new ItemStats.Bucket(2000, 3000, 1))));
+
+        // Act&Assert
+        mockMvc.perform(get("/items/stats"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"v1\""))
+                .andExpect(jsonPath("$.count", is(2)))
+                .andExpect(jsonPath("$.average", is(1500.0)))
+                .andExpect(jsonPath("$.buckets", hasSize(2)))
+                .andExpect(jsonPath("$.buckets[0].from", is(1000)));
+    }
+
+    @Test
+    @DisplayName("変更フィードを再接続時の通し番号から購読するAPIのテスト")
+    void streamChanges() throws Exception {
+        // Arrange
+        when(itemChangeStream.subscribe(5L)).thenReturn(new SseEmitter());
+
+        // Act&Assert: afterよりLast-Event-IDを優先し、非同期で応答を続ける
+        mockMvc.perform(get("/items/changes").param("after", "1").header("Last-Event-ID", "5"))
+                .andExpect(request().asyncStarted());
+        verify(itemChangeStream, times(1)).subscribe(5L);
+    }
+
+    @Test
+    @DisplayName("名前・価格帯でアイテムを検索するAPIのテスト")
+    void searchItems() throws Exception {
+        // Arrange: 指定した条件がそのままServiceに渡された場合のみ結果を返す
+        ItemSearchQuery query = new ItemSearchQuery("テスト", ItemSearchQuery.NameMatch.PREFIX,
+                1000, 3000, ItemSearchQuery.SortKey.PRICE, true, 10);
+        when(itemService.search(query)).thenReturn(List.of(
+                new ItemSummary(2L, "テストアイテム2", 2000),
+                new ItemSummary(1L, "テストアイテム1", 1000)));
+
+        // Act&Assert: 価格の降順で返る
+        mockMvc.perform(get("/items/search")
+                        .param("name", "テスト")
+                        .param("minPrice", "1000")
+                        .param("maxPrice", "3000")
+                        .param("sort", "PRICE")
+                        .param("order", "desc")
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(2)))
+                .andExpect(jsonPath("$[1].price", is(1000)));
+    }
+
+    @Test
+    @DisplayName("検索の並び順に不正な値を指定すると400を返すテスト")
+    void searchItems_InvalidOrder() throws Exception {
+        // Act&Assert
+        mockMvc.perform(get("/items/search").param("order", "RANDOM"))
+                .andExpect(status().isBadRequest());
+        verify(itemService, never()).search(any());
+    }
+
+    @Test
+    @DisplayName("検索の価格の下限が上限より大きいと400を返すテスト")
+    void searchItems_InvalidPriceRange() throws Exception {
+        // Arrange
+        when(itemService.search(any())).thenThrow(new InvalidRequestException("minPrice must not be greater than maxPrice."));
+
+        // Act&Assert
+        mockMvc.perform(get("/items/search").param("minPrice", "3000").param("maxPrice", "1000"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("指定したIDのアイテムを1件取得するAPIのテスト")
     void getItemById_Success() throws Exception{
@@ -127,6 +307,58 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$.price", is(3000)));
     }
 
+    @Test
+    @DisplayName("If-Matchを指定してアイテムを更新するAPIのテスト")
+    void updateItem_IfMatch() throws Exception {
+        // Arrange: バージョン3を指定して更新すると、バージョン4のアイテムを返すよう設定
+        Item updatedItem = Item.builder()
+                .id(1L)
+                .name("更新後アイテム")
+                .price(3000)
+                .version(4L)
+                .build();
+        when(itemService.updateItem(eq(1L), any(Item.class), eq(3L))).thenReturn(updatedItem);
+
+        // Act&Assert: 新しいバージョンがETagで返る
+        mockMvc.perform(put("/items/{id}", 1L)
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedItem)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
+    @Test
+    @DisplayName("If-Matchのバージョンが古い場合に412を返すAPIのテスト")
+    void updateItem_VersionConflict() throws Exception {
+        // Arrange
+        when(itemService.updateItem(eq(1L), any(Item.class), eq(2L)))
+                .thenThrow(new VersionConflictException("Item has been modified by another request. id: 1"));
+
+        // Act&Assert
+        mockMvc.perform(put("/items/{id}", 1L)
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item1)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("アイテムの価格だけを更新するAPIのテスト")
+    void updatePrice() throws Exception {
+        // Arrange
+        Item updatedItem = item1.toBuilder().price(1500).build();
+        when(itemService.updatePrice(1L, 1500)).thenReturn(updatedItem);
+
+        // Act&Assert
+        mockMvc.perform(patch("/items/1/price")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\":1500}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price", is(1500)));
+    }
+
     @Test
     @DisplayName("アイテムを削除するAPIのテスト")
     void deleteItem() throws Exception {
@@ -138,4 +370,140 @@ class ItemControllerTest {
                 .andExpect(status().isNoContent());  // ステータスコードが204 No Content
     }
 
+    @Test
+    @DisplayName("アイテムを一括登録するAPIのテスト")
+    void createItems() throws Exception {
+        // Arrange: 1件目は登録成功、2件目はID指定のため不正という結果を返すよう設定
+        List<ItemBatchResult> results = List.of(
+                new ItemBatchResult(0, 3L, ItemBatchResult.Status.CREATED, null),
+                new ItemBatchResult(1, null, ItemBatchResult.Status.INVALID, "A new item cannot have an ID"));
+        when(itemBatchService.createItems(any())).thenReturn(results);
+
+        // Act&Assert
+        mockMvc.perform(post("/items/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(item1, item2))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[1].status", is("INVALID")));
+    }
+
+    @Test
+    @DisplayName("NDJSON形式でアイテムを一括削除するAPIのテスト")
+    void deleteItemsFromNdjson() throws Exception {
+        // Arrange
+        List<ItemBatchResult> results = List.of(
+                new ItemBatchResult(0, 1L, ItemBatchResult.Status.DELETED, null),
+                new ItemBatchResult(1, 2L, ItemBatchResult.Status.NOT_FOUND, "Item not found with id: 2"));
+        when(itemBatchService.deleteItems(any())).thenReturn(results);
+
+        // Act&Assert: 1行に1つのIDを送る
+        mockMvc.perform(delete("/items/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("1\n2\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is("DELETED")))
+                .andExpect(jsonPath("$[1].status", is("NOT_FOUND")));
+    }
+
+    @Test
+    @DisplayName("NDJSONのアイテムを一括で取り込むAPIのテスト")
+    void importItems() throws Exception {
+        // Arrange
+        when(itemTransferService.importFrom(any())).thenReturn(2L);
+
+        // Act&Assert
+        mockMvc.perform(post("/items/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"id\":1,\"name\":\"a\",\"price\":100}\n{\"id\":2,\"name\":\"b\",\"price\":200}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)));
+    }
+
+    @Test
+    @DisplayName("不正な行を含むファイルを取り込んだ場合に400を返すAPIのテスト")
+    void importItems_Malformed() throws Exception {
+        // Arrange: 読み込み中にJSONの形式エラー
+        when(itemTransferService.importFrom(any()))
+                .thenThrow(new JsonParseException(null, "Item id is required."));
+
+        // Act&Assert
+        mockMvc.perform(post("/items/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"a\"}\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // シャードを使う場合の設定で、ItemControllerを別に起動する
+    @Nested
+    @TestPropertySource(properties = "item.sharding.enabled=true")
+    class Sharded {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ItemBatchService itemBatchService;
+
+        @Autowired
+        private ItemStatistics itemStatistics;
+
+        @Test
+        @DisplayName("シャードを使う場合は、一括処理・集計・インポート・エクスポートのAPIが501を返すテスト")
+        void notImplementedWhileSharded() throws Exception {
+            // Act&Assert
+            mockMvc.perform(post("/items/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(item1))))
+                    .andExpect(status().isNotImplemented());
+            mockMvc.perform(delete("/items/batch")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content("1\n"))
+                    .andExpect(status().isNotImplemented());
+            mockMvc.perform(get("/items/stats"))
+                    .andExpect(status().isNotImplemented());
+            mockMvc.perform(get("/items/export"))
+                    .andExpect(status().isNotImplemented());
+            mockMvc.perform(post("/items/import")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content("{\"id\":1,\"name\":\"a\",\"price\":100}\n"))
+                    .andExpect(status().isNotImplemented());
+            verifyNoInteractions(itemBatchService, itemStatistics);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "item.datasource.replicas.enabled=true")
+    class Replicas {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ItemService itemService;
+
+        @Test
+        @DisplayName("レプリカを使う場合は、ETagを付ける一覧をプライマリから読むテスト")
+        void getItems_OnPrimary() throws Exception {
+            // Arrange: 読み込み時にプライマリで読む設定になっているかを記録する
+            List<Boolean> primaryRequired = new ArrayList<>();
+            when(itemService.findAll()).thenAnswer(invocation -> {
+                primaryRequired.add(ReadYourWrites.isPrimaryRequired());
+                return List.of(item1);
+            });
+            when(itemService.findPage(null, 100)).thenAnswer(invocation -> {
+                primaryRequired.add(ReadYourWrites.isPrimaryRequired());
+                return new ItemPage(List.of(item1), null);
+            });
+
+            // Act
+            mockMvc.perform(get("/items")).andExpect(status().isOk());
+            mockMvc.perform(get("/items/page")).andExpect(status().isOk());
+
+            // Assert: 読み込み中だけプライマリで読み、終わったら元に戻す
+            assertThat(primaryRequired).containsExactly(true, true);
+            assertThat(ReadYourWrites.isPrimaryRequired()).isFalse();
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.example.springboot_tutorial.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingPasswordEncoderTest {
+
+    @Mock  // 本物のBCryptの代わり
+    private PasswordEncoder delegate;
+
+    private CachingPasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        passwordEncoder = new CachingPasswordEncoder(delegate, 10, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("照合に成功した認証情報は2回目以降照合しないテスト")
+    void matches_Cached() {
+        // Arrange
+        when(delegate.matches("password", "$hash")).thenReturn(true);
+
+        // Act
+        boolean first = passwordEncoder.matches("password", "$hash");
+        boolean second = passwordEncoder.matches("password", "$hash");
+
+        // Assert: どちらも成功し、実際の照合は1回だけ
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        verify(delegate, times(1)).matches("password", "$hash");
+        assertThat(passwordEncoder.stats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("照合に失敗した認証情報はキャッシュしないテスト")
+    void matches_FailureNotCached() {
+        // Arrange
+        when(delegate.matches("wrong", "$hash")).thenReturn(false);
+
+        // Act
+        passwordEncoder.matches("wrong", "$hash");
+        boolean second = passwordEncoder.matches("wrong", "$hash");
+
+        // Assert: 毎回実際に照合する
+        assertThat(second).isFalse();
+        verify(delegate, times(2)).matches("wrong", "$hash");
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.springboot_tutorial.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestAdmissionTest {
+
+    @Test
+    @DisplayName("バーストを使い切ったユーザーだけが制限されるテスト")
+    void rateLimiter_PerUser() {
+        // Arrange: 1秒に1個補充、最大3個（テスト中に補充されないよう遅くする）
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, 3);
+
+        // Act&Assert: 3回までは許可され、4回目は次のトークンまでの時間が返る
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire("user")).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire("user")).isPositive();
+        // 別のユーザーは影響を受けない
+        assertThat(rateLimiter.tryAcquire("other")).isZero();
+        assertThat(rateLimiter.stats().rejected()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("補充数0の場合は制限しないテスト")
+    void rateLimiter_Disabled() {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(0, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(rateLimiter.tryAcquire("user")).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("処理中のリクエスト数が上限に達したら断るテスト")
+    void loadShedder_MaxInFlight() {
+        // Arrange: 同時に2件まで、コネクション待ちなし
+        LoadShedder loadShedder = new LoadShedder(2, 10, () -> 0);
+
+        // Act&Assert: 3件目は断り、1件終わればまた受け付ける
+        assertThat(loadShedder.tryEnter()).isTrue();
+        assertThat(loadShedder.tryEnter()).isTrue();
+        assertThat(loadShedder.tryEnter()).isFalse();
+        loadShedder.exit();
+        assertThat(loadShedder.tryEnter()).isTrue();
+        assertThat(loadShedder.stats().shedInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("コネクション待ちのスレッドが多い場合は断るテスト")
+    void loadShedder_PoolWaiters() {
+        // Arrange: コネクション待ちが上限を超えている
+        LoadShedder loadShedder = new LoadShedder(100, 10, () -> 11);
+
+        // Act&Assert
+        assertThat(loadShedder.tryEnter()).isFalse();
+        assertThat(loadShedder.stats().inFlight()).isZero();
+        assertThat(loadShedder.stats().shedPoolWait()).isEqualTo(1);
+    }
+}